@@ -1,8 +1,10 @@
 package com.example.yc_product_plugin;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.app.Activity;
 import android.content.Intent;
+import android.content.res.Configuration;
 import android.os.Handler;
 import android.util.Log;
 
@@ -33,6 +35,26 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
 
   private ActivityPluginBinding activityPluginBinding;
 
+  // 内存紧张时释放位图池
+  private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+        YcProductPluginBitmapManager.releaseAll();
+      }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+
+    }
+
+    @Override
+    public void onLowMemory() {
+      YcProductPluginBitmapManager.releaseAll();
+    }
+  };
+
 
   @Override
   public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
@@ -60,6 +82,7 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
     // 初始化
     context = flutterPluginBinding.getApplicationContext();
     handler = new Handler(android.os.Looper.getMainLooper());
+    context.registerComponentCallbacks(memoryCallbacks);
 
 
     // methodChannel
@@ -70,6 +93,13 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
             );
     methodChannel.setMethodCallHandler(this);
 
+    // 多设备命令通过同一个入口执行
+    YcProductPluginDeviceManager.setup(handler, (method, arguments, result) ->
+            matchMethodCall(new MethodCall(method, arguments), result));
+
+    // 连接状态机
+    YcProductPluginConnection.setup(handler);
+
     // eventChannel
     eventChannel =
             new EventChannel(
@@ -85,6 +115,8 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
 
         eventSink = events;
         setupObserver(handler, eventSink);
+        YcProductPluginDeviceManager.setEventSink(eventSink);
+        YcProductPluginConnection.setEventSink(eventSink);
 
       }
 
@@ -106,6 +138,9 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
     // 销毁通道
     methodChannel.setMethodCallHandler(null);
     eventChannel.setStreamHandler(null);
+
+    context.unregisterComponentCallbacks(memoryCallbacks);
+    YcProductPluginBitmapManager.releaseAll();
   }
 
 
@@ -134,22 +169,7 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
 
       case "shutdownBle":
         Log.d("MARK-", "App closing, shutting down BLE gracefully.");
-        com.yucheng.ycbtsdk.YCBTClient.disconnectBle();
-        try {
-            android.bluetooth.BluetoothManager manager = (android.bluetooth.BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
-            if (manager != null) {
-                java.util.List<android.bluetooth.BluetoothDevice> connectedOSDevices = manager.getConnectedDevices(android.bluetooth.BluetoothProfile.GATT);
-                for (android.bluetooth.BluetoothDevice osDevice : connectedOSDevices) {
-                    android.bluetooth.BluetoothGatt tempGatt = osDevice.connectGatt(context, false, new android.bluetooth.BluetoothGattCallback() {});
-                    if (tempGatt != null) {
-                        tempGatt.disconnect();
-                        tempGatt.close();
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e("MARK-", "GATT force close error: " + e.getMessage());
-        }
+        YcProductPluginConnection.disconnect();
         result.success(null);
         break;
 
@@ -185,7 +205,23 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
         break;
 
       case "scanDevice":
-        YcProductPluginDevice.scanDevice(context,arguments, result);
+        YcProductPluginDevice.scanDevice(context, handler, eventSink, arguments, result);
+        break;
+
+      case "addDeviceSession":
+        YcProductPluginDeviceManager.addDeviceSession(arguments, result);
+        break;
+
+      case "removeDeviceSession":
+        YcProductPluginDeviceManager.removeDeviceSession(arguments, result);
+        break;
+
+      case "queryDeviceSessions":
+        YcProductPluginDeviceManager.queryDeviceSessions(result);
+        break;
+
+      case "enqueueDeviceCommand":
+        YcProductPluginDeviceManager.enqueueDeviceCommand(arguments, result);
         break;
 
       case "stopScanDevice":
@@ -417,7 +453,7 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
         break;
 
       case "startECGMeasurement":
-        YcProductPluginECG.startECGMeasurement(arguments, result, handler, eventSink);
+        YcProductPluginECG.startECGMeasurement(context, arguments, result, handler, eventSink);
         break;
 
       case "stopECGMeasurement":
@@ -428,6 +464,38 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
         YcProductPluginECG.getECGResult(arguments, result);
         break;
 
+      case "queryECGSessions":
+        YcProductPluginECG.queryECGSessions(context, result);
+        break;
+
+      case "deleteECGSession":
+        YcProductPluginECG.deleteECGSession(context, arguments, result);
+        break;
+
+      case "analyzeECGSessions":
+        YcProductPluginECG.analyzeECGSessions(context, arguments, result, handler, eventSink);
+        break;
+
+      case "exportECGSession":
+        YcProductPluginECG.exportECGSession(methodChannel, handler, context, arguments, result);
+        break;
+
+      case "setPulseTransitTimeEnabled":
+        YcProductPluginECG.setPulseTransitTimeEnabled(arguments, result);
+        break;
+
+      case "getECGMetrics":
+        YcProductPluginECG.getECGMetrics(result);
+        break;
+
+      case "setECGMetricsInterval":
+        YcProductPluginECG.setECGMetricsInterval(arguments, result, handler, eventSink);
+        break;
+
+      case "setWaveDisplayDecimation":
+        YcProductPluginECG.setWaveDisplayDecimation(arguments, result);
+        break;
+
       case "queryCollectDataBasicInfo":
         YcProductPluginCollectData.queryCollectDataBasicInfo(arguments, result);
         break;
@@ -445,6 +513,26 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
         YcProductPluginOTA.deviceUpgrade(methodChannel, handler, activityPluginBinding.getActivity(), arguments, result);
         break;
 
+      case "verifyFirmware":
+        YcProductPluginFirmwareVerifier.verifyFirmware(arguments, result);
+        break;
+
+      case "queryUpgradeTelemetry":
+        YcProductPluginOTATelemetry.queryUpgradeTelemetry(result);
+        break;
+
+      case "queryConnectionMetrics":
+        YcProductPluginConnectionMetrics.queryConnectionMetrics(arguments, result);
+        break;
+
+      case "queryFirmwareStore":
+        YcProductPluginFirmwareStore.queryFirmwareStore(context, arguments, result);
+        break;
+
+      case "applyFirmwarePatch":
+        YcProductPluginFirmwareStore.applyFirmwarePatch(context, handler, arguments, result);
+        break;
+
         // MARK: - 表盘
       case "queryWatchFaceInfo":
         YcProductPluginWatchFace.queryWatchFaceInfo(arguments, result);
@@ -455,11 +543,31 @@ public class YcProductPlugin implements FlutterPlugin, ActivityAware, MethodCall
         break;
 
       case "deleteWatchFace":
-        YcProductPluginWatchFace.deleteWatchFace(arguments, result);
+        YcProductPluginWatchFace.deleteWatchFace(context, arguments, result);
         break;
 
       case "installWatchFace":
-        YcProductPluginWatchFace.installWatchFace(methodChannel, handler, arguments, result);
+        YcProductPluginWatchFace.installWatchFace(context, methodChannel, handler, arguments, result);
+        break;
+
+      case "setProgressReportConfig":
+        YcProductPluginProgressReporter.setProgressReportConfig(arguments, result);
+        break;
+
+      case "installWatchFaces":
+        YcProductPluginWatchFaceQueue.installWatchFaces(context, methodChannel, handler, arguments, result);
+        break;
+
+      case "resumeWatchFaceQueue":
+        YcProductPluginWatchFaceQueue.resumeWatchFaceQueue(context, methodChannel, handler, result);
+        break;
+
+      case "queryWatchFaceQueue":
+        YcProductPluginWatchFaceQueue.queryWatchFaceQueue(context, result);
+        break;
+
+      case "cancelWatchFaceQueue":
+        YcProductPluginWatchFaceQueue.cancelWatchFaceQueue(context, result);
         break;
 
       case "queryDeviceCustomWatchFaceInfo":
@@ -1,140 +1,96 @@
 package com.example.yc_product_plugin;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.util.Log;
 
-import java.io.FileOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import android.graphics.Color;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
-import android.graphics.Canvas;
+import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.Shader;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.text.TextUtils;
-import android.view.View;
 
 public class YcProductPluginBitmapManager {
 
-    public static Bitmap clip(View view, int width, int height, int radius, int background) {
+    /**
+     * 位图不再使用, 放回位图池
+     *
+     * @param bitmap 从 YcProductPluginBitmapPool 取得的位图
+     */
+    public static void release(Bitmap bitmap) {
+        YcProductPluginBitmapPool.release(bitmap);
+    }
 
-        Bitmap bitmap;
-        if(view.getWidth() != 0 && view.getHeight() != 0){
-            bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
-        }else{
-            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        }
-        Canvas canvas = new Canvas(bitmap);
-        view.draw(canvas);
-        if (bitmap != null) {
-            bitmap = getRoundBitmapByShader(bitmap, width, height, radius, 2, background);
-        }
-        return bitmap;
+    /**
+     * 释放位图池 (内存紧张或插件从引擎分离时调用)
+     */
+    public static void releaseAll() {
+        YcProductPluginBitmapPool.clear();
     }
 
-    public static Bitmap clip(Bitmap bitmap, int width, int height, int radius, int boarder, int background) {
-        if (bitmap != null) {
-            bitmap = getRoundBitmapByShader(bitmap, width, height, radius, boarder, background);
-        }
-        return bitmap;
+
+    /// 保存bmp
+    public static boolean saveBitmap888(Bitmap bitmap, String path) {
+        return YcProductPluginBmpEncoder.save(bitmap, path, YcProductPluginBmpEncoder.format888);
     }
 
     /**
-     * 通过BitmapShader实现圆形边框
+     * 将Bitmap存为16位 RGB565 .bmp格式图片
      *
-     * @param bitmap
-     * @param outWidth  输出的图片宽度
-     * @param outHeight 输出的图片高度
-     * @param radius    圆角大小
-     * @param boarder   边框宽度
+     * @param bitmap 需要保存的图片
      */
-    public static Bitmap getRoundBitmapByShader(Bitmap bitmap, int outWidth, int outHeight, int radius, int boarder, int background) {
-        if (bitmap == null) {
-            return null;
-        }
-        int height = bitmap.getHeight();
-        int width = bitmap.getWidth();
-        float widthScale = outWidth * 1f / width;
-        float heightScale = outHeight * 1f / height;
-        Matrix matrix = new Matrix();
-        matrix.setScale(widthScale, heightScale);
-        //创建输出的bitmap
-        Bitmap desBitmap = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
-        //创建canvas并传入desBitmap，这样绘制的内容都会在desBitmap上
-        Canvas canvas = new Canvas(desBitmap);
-        canvas.drawColor(background);
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        //创建着色器
-        BitmapShader bitmapShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-        //给着色器配置matrix
-        bitmapShader.setLocalMatrix(matrix);
-        paint.setShader(bitmapShader);
-        //创建矩形区域并且预留出border
-        RectF rect = new RectF(boarder, boarder, outWidth - boarder, outHeight - boarder);
-        //把传入的bitmap绘制到圆角矩形区域内
-        canvas.drawRoundRect(rect, radius, radius, paint);
+    public static boolean saveBitmap565(Bitmap bitmap, String path) {
+        return YcProductPluginBmpEncoder.save(bitmap, path, YcProductPluginBmpEncoder.format565);
+    }
 
-        if (boarder > 0) {
-            //绘制boarder
-            Paint boarderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            boarderPaint.setColor(Color.parseColor("#00AAFF"));
-            boarderPaint.setStyle(Paint.Style.STROKE);
-            boarderPaint.setStrokeWidth(boarder);
-            canvas.drawRoundRect(rect, radius, radius, boarderPaint);
-        }
-        return desBitmap;
+    /**
+     * 将Bitmap抖动后存为16位 RGB565 .bmp格式图片
+     *
+     * @param bitmap     需要保存的图片
+     * @param ditherMode YcProductPluginRGB565Quantizer 量化方式
+     */
+    public static boolean saveBitmap565(Bitmap bitmap, String path, int ditherMode) {
+        return YcProductPluginBmpEncoder.save(bitmap, path, YcProductPluginBmpEncoder.format565, ditherMode);
     }
 
+    /**
+     * 把图片量化到RGB565能精确表示的颜色, 结果保存为PNG
+     *
+     * @param sourcePath 原图
+     * @param targetPath 输出
+     * @param ditherMode YcProductPluginRGB565Quantizer 量化方式
+     */
+    public static boolean quantizeTo565(String sourcePath, String targetPath, int ditherMode) {
 
-    /// 保存bmp
-    public static boolean saveBitmap888(Bitmap bitmap, String path) {
-        boolean isSave = false;
-        if (bitmap != null) {
-            int w = bitmap.getWidth(), h = bitmap.getHeight();
-            int[] pixels = new int[w * h];
-            bitmap.getPixels(pixels, 0, w, 0, 0, w, h);
+        Bitmap source = BitmapFactory.decodeFile(sourcePath);
+        if (source == null) {
+            return false;
+        }
 
-            byte[] rgb = addBMP_RGB_888(pixels, w, h);
-            byte[] header = addBMPImageHeader(rgb.length);
-            byte[] infos = addBMPImageInfosHeader(w, h);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = new int[width * height];
+        source.getPixels(pixels, 0, width, 0, 0, width, height);
+        source.recycle();
 
-            byte[] buffer = new byte[54 + rgb.length];
-            System.arraycopy(header, 0, buffer, 0, header.length);
-            System.arraycopy(infos, 0, buffer, 14, infos.length);
-            System.arraycopy(rgb, 0, buffer, 54, rgb.length);
-            FileOutputStream fos = null;
-            try {
-                File file = new File(path);
-                if (file.exists()) {
-                    file.delete();
-                }
-                fos = new FileOutputStream(path);
-                fos.write(buffer);
-                fos.flush();
-                isSave = true;
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    if (fos != null) {
-                        fos.close();
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+        YcProductPluginRGB565Quantizer.quantize(pixels, width, height, ditherMode);
+
+        Bitmap target = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        target.setPixels(pixels, 0, width, 0, 0, width, height);
+
+        try (FileOutputStream fos = new FileOutputStream(targetPath)) {
+            return target.compress(Bitmap.CompressFormat.PNG, 100, fos);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            target.recycle();
         }
-        return isSave;
     }
 
 
@@ -159,200 +115,12 @@ public class YcProductPluginBitmapManager {
         return null;
     }
 
-    //BMP文件头
-    private static byte[] addBMPImageHeader(int size) {
-        byte[] buffer = new byte[14];
-        buffer[0] = 0x42;
-        buffer[1] = 0x4D;
-        buffer[2] = (byte) size;
-        buffer[3] = (byte) (size >> 8);
-        buffer[4] = (byte) (size >> 16);
-        buffer[5] = (byte) (size >> 24);
-        buffer[6] = 0x00;
-        buffer[7] = 0x00;
-        buffer[8] = 0x00;
-        buffer[9] = 0x00;
-        buffer[10] = 0x36;
-        buffer[11] = 0x00;
-        buffer[12] = 0x00;
-        buffer[13] = 0x00;
-        return buffer;
-    }
-
-    //BMP文件信息头
-    private static byte[] addBMPImageInfosHeader(int w, int h) {
-        byte[] buffer = new byte[40];
-        buffer[0] = 0x28;
-        buffer[1] = 0x00;
-        buffer[2] = 0x00;
-        buffer[3] = 0x00;
-        buffer[4] = (byte) w;
-        buffer[5] = (byte) (w >> 8);
-        buffer[6] = (byte) (w >> 16);
-        buffer[7] = (byte) (w >> 24);
-        buffer[8] = (byte) h;
-        buffer[9] = (byte) (h >> 8);
-        buffer[10] = (byte) (h >> 16);
-        buffer[11] = (byte) (h >> 24);
-        buffer[12] = 0x01;
-        buffer[13] = 0x00;
-        buffer[14] = 0x18;
-        buffer[15] = 0x00;
-        buffer[16] = 0x00;
-        buffer[17] = 0x00;
-        buffer[18] = 0x00;
-        buffer[19] = 0x00;
-        buffer[20] = 0x00;
-        buffer[21] = 0x00;
-        buffer[22] = 0x00;
-        buffer[23] = 0x00;
-        buffer[24] = (byte) 0xE0;
-        buffer[25] = 0x01;
-        buffer[26] = 0x00;
-        buffer[27] = 0x00;
-        buffer[28] = 0x02;
-        buffer[29] = 0x03;
-        buffer[30] = 0x00;
-        buffer[31] = 0x00;
-        buffer[32] = 0x00;
-        buffer[33] = 0x00;
-        buffer[34] = 0x00;
-        buffer[35] = 0x00;
-        buffer[36] = 0x00;
-        buffer[37] = 0x00;
-        buffer[38] = 0x00;
-        buffer[39] = 0x00;
-        return buffer;
-    }
-
-    private static byte[] addBMP_RGB_888(int[] b, int w, int h) {
-        int len = b.length;
-        Log.d("LHY", "addBMP_RGB_888: " + b.length);
-        byte[] buffer = new byte[(w * 3 + ((4 - w % 4) % 4)) * h];
-        int offset = 0;
-        for (int i = len - 1; i >= w; i -= w) {
-            //DIB文件格式最后一行为第一行，每行按从左到右顺序
-            int start = i - w + 1;
-            for (int j = start; j <= i; j++) {
-                buffer[offset] = (byte) b[j];
-                buffer[offset + 1] = (byte) (b[j] >> 8);
-                buffer[offset + 2] = (byte) (b[j] >> 16);
-                offset += 3;
-            }
-            offset += ((4 - w % 4) % 4);
-        }
-        return buffer;
-    }
-
     /**
      * 将Bitmap存为 .bmp格式图片
      *
      * @param bitmap 需要保存的图片
      */
     public static boolean saveBitmap8882(Bitmap bitmap, String path) {
-        boolean flag = false;
-        if (bitmap == null) {
-            return flag;
-        }
-        // 位图大小
-        int nBmpWidth = bitmap.getWidth();
-        int nBmpHeight = bitmap.getHeight();
-        // 图像数据大小
-        int bufferSize = nBmpHeight * (nBmpWidth * 3 + nBmpWidth % 4);
-        try {
-            // 存储文件名
-            //String filename = "/sdcard/test.bmp";
-            File file = new File(path);
-            if (!file.exists()) {
-                file.createNewFile();
-            } else {
-                file.delete();
-
-            }
-
-            FileOutputStream fileos = new FileOutputStream(path);
-            // bmp文件头
-            int bfType = 0x4d42;
-            long bfSize = 14 + 40 + bufferSize;
-            int bfReserved1 = 0;
-            int bfReserved2 = 0;
-            long bfOffBits = 14 + 40;
-            // 保存bmp文件头
-            writeWord(fileos, bfType);
-            writeDword(fileos, bfSize);
-            writeWord(fileos, bfReserved1);
-            writeWord(fileos, bfReserved2);
-            writeDword(fileos, bfOffBits);
-            // bmp信息头
-            long biSize = 40L;
-            long biWidth = nBmpWidth;
-            long biHeight = nBmpHeight;
-            int biPlanes = 1;
-            int biBitCount = 24;
-            long biCompression = 0L;
-            long biSizeImage = 0L;
-            long biXpelsPerMeter = 0L;
-            long biYPelsPerMeter = 0L;
-            long biClrUsed = 0L;
-            long biClrImportant = 0L;
-            // 保存bmp信息头
-            writeDword(fileos, biSize);
-            writeLong(fileos, biWidth);
-            writeLong(fileos, biHeight);
-            writeWord(fileos, biPlanes);
-            writeWord(fileos, biBitCount);
-            writeDword(fileos, biCompression);
-            writeDword(fileos, biSizeImage);
-            writeLong(fileos, biXpelsPerMeter);
-            writeLong(fileos, biYPelsPerMeter);
-            writeDword(fileos, biClrUsed);
-            writeDword(fileos, biClrImportant);
-            // 像素扫描
-            byte bmpData[] = new byte[bufferSize];
-            int wWidth = (nBmpWidth * 3 + nBmpWidth % 4);
-            for (int nCol = 0, nRealCol = nBmpHeight - 1; nCol < nBmpHeight; ++nCol, --nRealCol)
-                for (int wRow = 0, wByteIdex = 0; wRow < nBmpWidth; wRow++, wByteIdex += 3) {
-                    int clr = bitmap.getPixel(wRow, nCol);
-                    bmpData[nRealCol * wWidth + wByteIdex] = (byte) Color.blue(clr);
-                    bmpData[nRealCol * wWidth + wByteIdex + 1] = (byte) Color.green(clr);
-                    bmpData[nRealCol * wWidth + wByteIdex + 2] = (byte) Color.red(clr);
-                }
-
-            fileos.write(bmpData);
-            fileos.flush();
-            fileos.close();
-
-            flag = true;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return flag;
-    }
-
-    private static void writeWord(FileOutputStream stream, int value) throws IOException {
-        byte[] b = new byte[2];
-        b[0] = (byte) (value & 0xff);
-        b[1] = (byte) (value >> 8 & 0xff);
-        stream.write(b);
-    }
-
-    private static void writeDword(FileOutputStream stream, long value) throws IOException {
-        byte[] b = new byte[4];
-        b[0] = (byte) (value & 0xff);
-        b[1] = (byte) (value >> 8 & 0xff);
-        b[2] = (byte) (value >> 16 & 0xff);
-        b[3] = (byte) (value >> 24 & 0xff);
-        stream.write(b);
-    }
-
-    private static void writeLong(FileOutputStream stream, long value) throws IOException {
-        byte[] b = new byte[4];
-        b[0] = (byte) (value & 0xff);
-        b[1] = (byte) (value >> 8 & 0xff);
-        b[2] = (byte) (value >> 16 & 0xff);
-        b[3] = (byte) (value >> 24 & 0xff);
-        stream.write(b);
+        return YcProductPluginBmpEncoder.save(bitmap, path, YcProductPluginBmpEncoder.format888);
     }
 }
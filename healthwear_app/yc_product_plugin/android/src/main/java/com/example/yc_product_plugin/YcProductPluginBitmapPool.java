@@ -0,0 +1,114 @@
+package com.example.yc_product_plugin;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ARGB_8888 位图池 (按宽高复用)
+ * <p>
+ * 释放回池中的位图按尺寸保存, 同尺寸申请时直接清空复用;
+ * 超过容量时回收最久未使用尺寸的位图.
+ */
+public class YcProductPluginBitmapPool {
+
+    // 池中位图总字节数上限
+    static final long maxPoolBytes = 16L * 1024 * 1024;
+
+    // 访问顺序, 最久未使用的尺寸在前
+    private static final LinkedHashMap<Long, ArrayDeque<Bitmap>> pool = new LinkedHashMap<>(16, 0.75f, true);
+    private static long poolBytes = 0;
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    // 按尺寸计算, 位图被外部回收后仍能正确扣减
+    private static long byteCount(Bitmap bitmap) {
+        return (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+    }
+
+    /**
+     * 取一个透明的位图
+     *
+     * @param width  宽
+     * @param height 高
+     */
+    public static synchronized Bitmap acquire(int width, int height) {
+
+        ArrayDeque<Bitmap> bitmaps = pool.get(key(width, height));
+        while (bitmaps != null && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.pop();
+            poolBytes -= byteCount(bitmap);
+            if (!bitmap.isRecycled()) {
+                bitmap.eraseColor(0);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 位图不再使用, 放回池中
+     */
+    public static synchronized void release(Bitmap bitmap) {
+
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() ||
+                bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+
+        long size = byteCount(bitmap);
+        if (size > maxPoolBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        long key = key(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> bitmaps = pool.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            pool.put(key, bitmaps);
+        }
+        for (Bitmap item : bitmaps) {
+            if (item == bitmap) {
+                return;
+            }
+        }
+        bitmaps.push(bitmap);
+        poolBytes += size;
+
+        trim(maxPoolBytes);
+    }
+
+    /**
+     * 回收池中位图直到不超过指定大小
+     */
+    private static void trim(long limit) {
+
+        Iterator<Map.Entry<Long, ArrayDeque<Bitmap>>> iterator = pool.entrySet().iterator();
+        while (poolBytes > limit && iterator.hasNext()) {
+            ArrayDeque<Bitmap> bitmaps = iterator.next().getValue();
+            while (poolBytes > limit && !bitmaps.isEmpty()) {
+                Bitmap bitmap = bitmaps.removeLast();
+                poolBytes -= byteCount(bitmap);
+                bitmap.recycle();
+            }
+            if (bitmaps.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空位图池
+     */
+    public static synchronized void clear() {
+        trim(0);
+        pool.clear();
+        poolBytes = 0;
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.yc_product_plugin;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BMP编码 (24位 BGR 和 16位 RGB565)
+ * <p>
+ * 一次 getPixels 取出全部像素, 逐行转换到可复用的直接缓冲区,
+ * 文件头和像素数据一次聚集写入. 大图按行分段在ForkJoin线程池上并行转换,
+ * 各段写入互不重叠的区域, 结果与顺序转换完全相同.
+ */
+public class YcProductPluginBmpEncoder {
+
+    // 每像素位数
+    public static final int format888 = 24;
+    public static final int format565 = 16;
+
+    static final int fileHeaderSize = 14;
+    static final int infoHeaderSize = 40;
+    // BI_BITFIELDS 的三个颜色掩码
+    static final int bitFieldsSize = 12;
+
+    static final int compressionRGB = 0;
+    static final int compressionBitFields = 3;
+
+    // 超过该像素数时并行转换
+    static final int parallelThreshold = 128 * 1024;
+    // 每个任务最少处理的行数
+    static final int minRowsPerTask = 32;
+
+    private static ForkJoinPool pool;
+
+    // save 结束后保留的缓冲区上限 (像素), 更大的图片用完即释放
+    static final int maxRetainedPixels = 512 * 512;
+
+    // 复用的缓冲区, 只在 save 内使用
+    private static int[] pixelBuffer = new int[0];
+    private static byte[] rowBuffer = new byte[0];
+    private static ByteBuffer dataBuffer = ByteBuffer.allocateDirect(0);
+    private static final ByteBuffer headerBuffer =
+            ByteBuffer.allocateDirect(fileHeaderSize + infoHeaderSize + bitFieldsSize).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * 每行字节数 (4字节对齐)
+     */
+    static int rowStride(int width, int bitCount) {
+        return ((width * bitCount + 31) / 32) * 4;
+    }
+
+    /**
+     * 文件头 + 信息头 (+ 掩码) 大小
+     */
+    static int headerSize(int bitCount) {
+        return fileHeaderSize + infoHeaderSize + (bitCount == format565 ? bitFieldsSize : 0);
+    }
+
+    /**
+     * 写入文件头
+     *
+     * @param out      输出, 从当前位置写入
+     * @param width    宽
+     * @param height   高
+     * @param bitCount 每像素位数
+     */
+    static void writeHeader(ByteBuffer out, int width, int height, int bitCount) {
+
+        int offset = headerSize(bitCount);
+        int imageSize = rowStride(width, bitCount) * height;
+
+        out.order(ByteOrder.LITTLE_ENDIAN);
+
+        // BITMAPFILEHEADER
+        out.put((byte) 'B');
+        out.put((byte) 'M');
+        out.putInt(offset + imageSize);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putInt(offset);
+
+        // BITMAPINFOHEADER
+        out.putInt(infoHeaderSize);
+        out.putInt(width);
+        out.putInt(height);
+        out.putShort((short) 1);
+        out.putShort((short) bitCount);
+        out.putInt(bitCount == format565 ? compressionBitFields : compressionRGB);
+        out.putInt(imageSize);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(0);
+
+        if (bitCount == format565) {
+            out.putInt(0xF800);
+            out.putInt(0x07E0);
+            out.putInt(0x001F);
+        }
+    }
+
+    /**
+     * 转换一段行 (BMP最后一行在前)
+     *
+     * @param pixels   ARGB像素, 从上到下
+     * @param width    宽
+     * @param height   高
+     * @param bitCount 每像素位数
+     * @param fromRow  输出起始行 (含)
+     * @param toRow    输出结束行 (不含)
+     * @param out      像素数据区, 第0行在位置0
+     * @param row      单行缓冲, 长度不小于行字节数
+     */
+    static void convertRows(int[] pixels, int width, int height, int bitCount,
+                            int fromRow, int toRow, ByteBuffer out, byte[] row) {
+
+        int stride = rowStride(width, bitCount);
+        ByteBuffer target = out.duplicate();
+        target.position(fromRow * stride);
+
+        for (int outRow = fromRow; outRow < toRow; outRow++) {
+
+            int start = (height - 1 - outRow) * width;
+            int index = 0;
+
+            if (bitCount == format565) {
+                for (int x = 0; x < width; x++) {
+                    int color = pixels[start + x];
+                    int value = ((color >> 8) & 0xF800) | ((color >> 5) & 0x07E0) | ((color >> 3) & 0x001F);
+                    row[index++] = (byte) value;
+                    row[index++] = (byte) (value >> 8);
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    int color = pixels[start + x];
+                    row[index++] = (byte) color;
+                    row[index++] = (byte) (color >> 8);
+                    row[index++] = (byte) (color >> 16);
+                }
+            }
+
+            // 行尾补齐
+            while (index < stride) {
+                row[index++] = 0;
+            }
+            target.put(row, 0, stride);
+        }
+    }
+
+    /**
+     * 转换全部行, 大图自动并行
+     *
+     * @param pixels   ARGB像素, 从上到下
+     * @param width    宽
+     * @param height   高
+     * @param bitCount 每像素位数
+     * @param out      像素数据区, 第0行在位置0
+     * @param row      顺序转换使用的单行缓冲
+     */
+    static void convert(int[] pixels, int width, int height, int bitCount, ByteBuffer out, byte[] row) {
+
+        if ((long) width * height < parallelThreshold || Runtime.getRuntime().availableProcessors() < 2) {
+            convertRows(pixels, width, height, bitCount, 0, height, out, row);
+        } else {
+            convertParallel(pixels, width, height, bitCount, out);
+        }
+    }
+
+    /**
+     * 按行分段并行转换
+     */
+    static void convertParallel(int[] pixels, int width, int height, int bitCount, ByteBuffer out) {
+        pool().invoke(new RowTask(pixels, width, height, bitCount, 0, height, out));
+    }
+
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        }
+        return pool;
+    }
+
+    /**
+     * 一段行的转换任务
+     */
+    static class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final int[] pixels;
+        final int width;
+        final int height;
+        final int bitCount;
+        final int fromRow;
+        final int toRow;
+        final ByteBuffer out;
+
+        RowTask(int[] pixels, int width, int height, int bitCount, int fromRow, int toRow, ByteBuffer out) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.bitCount = bitCount;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (toRow - fromRow <= minRowsPerTask) {
+                convertRows(pixels, width, height, bitCount, fromRow, toRow, out, new byte[rowStride(width, bitCount)]);
+                return;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new RowTask(pixels, width, height, bitCount, fromRow, middle, out),
+                    new RowTask(pixels, width, height, bitCount, middle, toRow, out));
+        }
+    }
+
+    /**
+     * 保存为BMP
+     *
+     * @param bitmap   图片
+     * @param path     文件路径
+     * @param bitCount format888 或 format565
+     */
+    public static boolean save(Bitmap bitmap, String path, int bitCount) {
+        return save(bitmap, path, bitCount, YcProductPluginRGB565Quantizer.modeTruncate);
+    }
+
+    /**
+     * 保存为BMP, 565输出时先按指定方式抖动
+     *
+     * @param bitmap     图片
+     * @param path       文件路径
+     * @param bitCount   format888 或 format565
+     * @param ditherMode YcProductPluginRGB565Quantizer 量化方式
+     */
+    public static synchronized boolean save(Bitmap bitmap, String path, int bitCount, int ditherMode) {
+
+        if (bitmap == null || path == null) {
+            return false;
+        }
+        if (bitCount != format888 && bitCount != format565) {
+            return false;
+        }
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int stride = rowStride(width, bitCount);
+        int imageSize = stride * height;
+
+        if (pixelBuffer.length < width * height) {
+            pixelBuffer = new int[width * height];
+        }
+        if (rowBuffer.length < stride) {
+            rowBuffer = new byte[stride];
+        }
+        if (dataBuffer.capacity() < imageSize) {
+            dataBuffer = ByteBuffer.allocateDirect(imageSize);
+        }
+
+        bitmap.getPixels(pixelBuffer, 0, width, 0, 0, width, height);
+
+        if (bitCount == format565 && ditherMode != YcProductPluginRGB565Quantizer.modeTruncate) {
+            YcProductPluginRGB565Quantizer.quantize(pixelBuffer, width, height, ditherMode);
+        }
+
+        headerBuffer.clear();
+        writeHeader(headerBuffer, width, height, bitCount);
+        headerBuffer.flip();
+
+        dataBuffer.clear();
+        convert(pixelBuffer, width, height, bitCount, dataBuffer, rowBuffer);
+        dataBuffer.limit(imageSize);
+
+        ByteBuffer[] buffers = {headerBuffer, dataBuffer};
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw");
+             FileChannel channel = file.getChannel()) {
+
+            channel.truncate(0);
+            long total = headerBuffer.remaining() + (long) imageSize;
+            long written = 0;
+            while (written < total) {
+                written += channel.write(buffers);
+            }
+            return true;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            trimBuffers();
+        }
+    }
+
+    /**
+     * 超过上限的缓冲区不再保留, 避免一次大图之后一直占用内存
+     */
+    private static void trimBuffers() {
+        if (pixelBuffer.length > maxRetainedPixels) {
+            pixelBuffer = new int[0];
+        }
+        if (dataBuffer.capacity() > maxRetainedPixels * 3) {
+            dataBuffer = ByteBuffer.allocateDirect(0);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.yc_product_plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * bsdiff 格式的二进制差分补丁
+ * <p>
+ * 文件结构与 BSDIFF40 相同 (32字节文件头 + ctrl, diff, extra 三段), 三段数据用 gzip 压缩
+ * (系统没有 bzip2), 文件头标识为 BSDIFFGZ. bzip2 压缩的 BSDIFF40 补丁不支持. 旧文件和补丁都内存映射, 新文件通过固定大小的缓冲区流式写出,
+ * 内存占用与固件大小无关.
+ */
+public class YcProductPluginBsPatch {
+
+    static final String magic = "BSDIFFGZ";
+    static final String bzip2Magic = "BSDIFF40";
+    static final int headerSize = 32;
+
+    // 写出缓冲区大小
+    static final int bufferSize = 64 * 1024;
+
+    /**
+     * 生成新文件
+     *
+     * @param oldPath   旧文件
+     * @param patchPath 补丁
+     * @param newPath   新文件
+     * @return 新文件的SHA-256
+     */
+    public static String apply(String oldPath, String patchPath, String newPath) throws IOException {
+
+        MappedByteBuffer old = YcProductPluginFileLoader.map(oldPath);
+        ByteBuffer patch = YcProductPluginFileLoader.map(patchPath).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (patch.capacity() < headerSize) {
+            throw new IOException("Patch too short");
+        }
+        byte[] magicBytes = new byte[8];
+        patch.get(magicBytes);
+        String patchMagic = new String(magicBytes, StandardCharsets.US_ASCII);
+        if (bzip2Magic.equals(patchMagic)) {
+            throw new IOException("bzip2 patches (BSDIFF40) not supported, use gzip (BSDIFFGZ)");
+        }
+        if (!magic.equals(patchMagic)) {
+            throw new IOException("Not a BSDIFFGZ patch");
+        }
+
+        long ctrlLength = offtin(patch, 8);
+        long diffLength = offtin(patch, 16);
+        long newSize = offtin(patch, 24);
+        if (ctrlLength < 0 || diffLength < 0 || newSize < 0 ||
+                headerSize + ctrlLength + diffLength > patch.capacity()) {
+            throw new IOException("Corrupt patch header");
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        int ctrlStart = headerSize;
+        int diffStart = (int) (ctrlStart + ctrlLength);
+        int extraStart = (int) (diffStart + diffLength);
+
+        try (DataInputStream ctrl = new DataInputStream(section(patch, ctrlStart, diffStart));
+             InputStream diff = section(patch, diffStart, extraStart);
+             InputStream extra = section(patch, extraStart, patch.capacity());
+             OutputStream output = new BufferedOutputStream(new FileOutputStream(newPath), bufferSize)) {
+
+            byte[] buffer = new byte[bufferSize];
+            byte[] control = new byte[24];
+            ByteBuffer controlBuffer = ByteBuffer.wrap(control).order(ByteOrder.LITTLE_ENDIAN);
+
+            long oldSize = old.capacity();
+            long oldPosition = 0;
+            long newPosition = 0;
+
+            while (newPosition < newSize) {
+
+                ctrl.readFully(control);
+                long addLength = offtin(controlBuffer, 0);
+                long copyLength = offtin(controlBuffer, 8);
+                long seek = offtin(controlBuffer, 16);
+
+                if (addLength < 0 || copyLength < 0 || newPosition + addLength + copyLength > newSize) {
+                    throw new IOException("Corrupt patch control block");
+                }
+
+                // diff 段: 逐字节加到旧文件对应位置
+                long remaining = addLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    readFully(diff, buffer, count);
+                    for (int i = 0; i < count; i++) {
+                        long position = oldPosition + i;
+                        if (position >= 0 && position < oldSize) {
+                            buffer[i] += old.get((int) position);
+                        }
+                    }
+                    output.write(buffer, 0, count);
+                    digest.update(buffer, 0, count);
+                    oldPosition += count;
+                    remaining -= count;
+                }
+                newPosition += addLength;
+
+                // extra 段: 直接复制
+                remaining = copyLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    readFully(extra, buffer, count);
+                    output.write(buffer, 0, count);
+                    digest.update(buffer, 0, count);
+                    remaining -= count;
+                }
+                newPosition += copyLength;
+                oldPosition += seek;
+            }
+        }
+
+        return YcProductPluginWatchFaceCache.toHex(digest.digest());
+    }
+
+    /**
+     * bsdiff 的64位整数: 小端, 最高位为符号位
+     */
+    static long offtin(ByteBuffer buffer, int index) {
+        long value = buffer.getLong(index);
+        return value < 0 ? -(value & Long.MAX_VALUE) : value;
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int count) throws IOException {
+        int offset = 0;
+        while (offset < count) {
+            int read = input.read(buffer, offset, count - offset);
+            if (read < 0) {
+                throw new EOFException("Patch data truncated");
+            }
+            offset += read;
+        }
+    }
+
+    private static InputStream section(ByteBuffer patch, int start, int end) throws IOException {
+        ByteBuffer slice = patch.duplicate();
+        slice.limit(end).position(start);
+        return new GZIPInputStream(new BufferInputStream(slice.slice()), bufferSize);
+    }
+
+    /**
+     * 映射缓冲区的输入流
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.yc_product_plugin;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.yucheng.ycbtsdk.Constants;
+import com.yucheng.ycbtsdk.YCBTClient;
+import com.yucheng.ycbtsdk.bean.ScanDeviceBean;
+import com.yucheng.ycbtsdk.gatt.Reconnect;
+import com.yucheng.ycbtsdk.response.BleConnectResponse;
+import com.yucheng.ycbtsdk.response.BleScanResponse;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * 设备连接状态机
+ * <p>
+ * idle -> (scanning) -> connecting -> discovering -> ready, 连接断开后进入 backoff,
+ * 按指数退避加随机抖动的时间重连, 超过最大次数回到 idle. 重连优先使用缓存的 BluetoothDevice,
+ * 连续失败后先扫描目标设备再连接. 启动时以 SDK 绑定的设备作为目标.
+ * SDK自带的回连只在固件升级期间打开, 其余时间由这里控制.
+ * 每次状态变化通过 EventChannel 发送 (deviceConnectionStateChange). 所有状态只在主线程修改.
+ */
+public class YcProductPluginConnection {
+
+    static final String stateIdle = "idle";
+    static final String stateScanning = "scanning";
+    static final String stateConnecting = "connecting";
+    static final String stateDiscovering = "discovering";
+    static final String stateReady = "ready";
+    static final String stateBackoff = "backoff";
+
+    // 退避时间: base * 2^attempt, 不超过 maxBackoffMs, 实际取 [一半, 全部] 之间的随机值
+    static final long baseBackoffMs = 1000;
+    static final long maxBackoffMs = 60 * 1000;
+    static final int maxAttempts = 10;
+
+    // 连续直连失败多少次后先扫描
+    static final int scanAfterAttempts = 2;
+
+    static final long connectTimeoutMs = 15 * 1000;
+    static final int scanTimeoutSeconds = 5;
+
+    /**
+     * 连接结果 (ready 或失败)
+     */
+    interface ConnectCallback {
+        void onResult(boolean isReady);
+    }
+
+    private static Handler handler;
+    private static EventChannel.EventSink eventSink;
+
+    private static String state = stateIdle;
+    private static String targetMac;
+    private static BluetoothDevice cachedDevice;
+    private static int attempt = 0;
+    private static boolean isReconnectEnabled = true;
+    private static boolean isObserving = false;
+    private static boolean isOtaInProgress = false;
+    private static ConnectCallback pendingCallback;
+
+    private static final Random random = new Random();
+
+    private static final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            if (stateBackoff.equals(state)) {
+                start();
+            }
+        }
+    };
+
+    private static final Runnable attemptTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (stateConnecting.equals(state) || stateDiscovering.equals(state) || stateScanning.equals(state)) {
+                onAttemptFailed("timeout");
+            }
+        }
+    };
+
+    static void setup(Handler handler) {
+        YcProductPluginConnection.handler = handler;
+    }
+
+    /**
+     * SDK 初始化后调用: 开始监听蓝牙状态, 以绑定过的设备作为连接目标,
+     * 允许回连时马上开始连接 (代替 SDK 启动时的回连)
+     */
+    static void init(boolean isReconnectEnabled) {
+
+        observe();
+        setReconnectEnabled(isReconnectEnabled);
+
+        String macAddress = YCBTClient.getBindDeviceMac();
+        if (targetMac != null || macAddress == null || macAddress.isEmpty()) {
+            return;
+        }
+        targetMac = macAddress;
+        attempt = 0;
+        if (YCBTClient.connectState() == Constants.BLEState.ReadWriteOK) {
+            transition(stateReady, 0);
+        } else if (isReconnectEnabled) {
+            start();
+        }
+    }
+
+    /**
+     * 固件升级期间设备会重启进入DFU模式, 这时交给 SDK 自带的回连,
+     * 升级结束后恢复由这里控制
+     */
+    static void setOtaInProgress(boolean isOta) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                isOtaInProgress = isOta;
+                Reconnect.getInstance().setReconnect(isOta && isReconnectEnabled);
+                if (isOta) {
+                    handler.removeCallbacks(retry);
+                    handler.removeCallbacks(attemptTimeout);
+                    if (stateBackoff.equals(state)) {
+                        transition(stateIdle, 0);
+                    }
+                } else if (isReconnectEnabled && targetMac != null && stateIdle.equals(state) &&
+                        YCBTClient.connectState() != Constants.BLEState.ReadWriteOK) {
+                    attempt = 0;
+                    start();
+                }
+            }
+        });
+    }
+
+    private static void observe() {
+        // 单独监听蓝牙状态, Flutter 没有监听 EventChannel 时也能工作
+        if (!isObserving) {
+            isObserving = true;
+            YCBTClient.registerBleStateChange(code -> onBleStateChange(code));
+        }
+    }
+
+    static void setEventSink(EventChannel.EventSink eventSink) {
+        YcProductPluginConnection.eventSink = eventSink;
+    }
+
+    /**
+     * 断开后是否自动重连, SDK自带的回连只在固件升级期间打开
+     */
+    static void setReconnectEnabled(boolean isEnabled) {
+        isReconnectEnabled = isEnabled;
+        Reconnect.getInstance().setReconnect(isOtaInProgress && isEnabled);
+        if (!isEnabled && stateBackoff.equals(state)) {
+            handler.removeCallbacks(retry);
+            transition(stateIdle, 0);
+        }
+    }
+
+    static String getState() {
+        return state;
+    }
+
+    private static String key(String macAddress) {
+        return macAddress == null ? "" : macAddress.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 连接设备, 之前的连接目标被替换
+     *
+     * @param macAddress 设备
+     * @param callback   ready 或本次连接失败时回调一次
+     */
+    static void connect(String macAddress, ConnectCallback callback) {
+
+        observe();
+
+        handler.removeCallbacks(retry);
+        handler.removeCallbacks(attemptTimeout);
+        answer(false);
+
+        if (!key(macAddress).equals(key(targetMac))) {
+            cachedDevice = null;
+        }
+        targetMac = macAddress;
+        attempt = 0;
+        pendingCallback = callback;
+
+        if (YCBTClient.connectState() == Constants.BLEState.ReadWriteOK) {
+            if (key(macAddress).equals(key(YCBTClient.getBindDeviceMac()))) {
+                transition(stateReady, 0);
+                answer(true);
+                return;
+            }
+            // 先断开当前设备, 目标已经改变, 它的断开不会触发重连
+            YCBTClient.disconnectBle();
+        }
+        start();
+    }
+
+    /**
+     * 主动断开, 不再重连
+     */
+    static void disconnect() {
+        targetMac = null;
+        handler.removeCallbacks(retry);
+        handler.removeCallbacks(attemptTimeout);
+        answer(false);
+        YcProductPluginConnectionMetrics.onFailed("disconnect");
+        YCBTClient.stopScanBle();
+        YCBTClient.disconnectBle();
+        transition(stateIdle, 0);
+    }
+
+    /**
+     * 蓝牙状态变化
+     */
+    private static void onBleStateChange(int code) {
+
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                if (targetMac == null || !key(targetMac).equals(key(YCBTClient.getBindDeviceMac()))) {
+                    return;
+                }
+
+                if (code == Constants.BLEState.ReadWriteOK) {
+                    handler.removeCallbacks(attemptTimeout);
+                    attempt = 0;
+                    YcProductPluginConnectionMetrics.onReady();
+                    BluetoothDevice device = YCBTClient.getConnectedDevice();
+                    if (device != null) {
+                        cachedDevice = device;
+                    }
+                    transition(stateReady, 0);
+                    answer(true);
+
+                } else if (code >= Constants.BLEState.Connected && code < Constants.BLEState.ReadWriteOK) {
+                    if (stateConnecting.equals(state)) {
+                        transition(stateDiscovering, 0);
+                    }
+
+                } else if (code == Constants.BLEState.Disconnect || code == Constants.BLEState.TimeOut ||
+                        code == Constants.BLEState.NotOpen) {
+                    if (stateReady.equals(state)) {
+                        // 连接断开
+                        scheduleRetry("link lost");
+                    } else if (stateConnecting.equals(state) || stateDiscovering.equals(state)) {
+                        onAttemptFailed("code " + code);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 开始一次连接, 没有可用的 BluetoothDevice 或连续直连失败时先扫描
+     */
+    private static void start() {
+
+        YcProductPluginConnectionMetrics.begin(targetMac,
+                pendingCallback != null ? "user" : "reconnect", attempt);
+
+        BluetoothDevice device = cachedDevice;
+        if (device == null) {
+            device = YcProductPluginScanIndex.device(targetMac);
+        }
+        if (device == null && attempt < scanAfterAttempts) {
+            BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+            device = adapter == null ? null : adapter.getRemoteDevice(key(targetMac));
+        }
+
+        if (device == null || (attempt >= scanAfterAttempts && attempt % scanAfterAttempts == 0)) {
+            scan();
+        } else {
+            connectBle(device);
+        }
+    }
+
+    private static void scan() {
+
+        String macAddress = targetMac;
+        transition(stateScanning, 0);
+        handler.postDelayed(attemptTimeout, (scanTimeoutSeconds + 1) * 1000L);
+
+        YcProductPluginConnectionMetrics.onScanStart();
+        YCBTClient.startScanBle(new BleScanResponse() {
+            @Override
+            public void onScanResponse(int code, ScanDeviceBean scanDeviceBean) {
+                if (scanDeviceBean == null || !key(macAddress).equals(key(scanDeviceBean.getDeviceMac()))) {
+                    return;
+                }
+                YcProductPluginScanIndex.update(scanDeviceBean);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (stateScanning.equals(state) && key(macAddress).equals(key(targetMac))) {
+                            YCBTClient.stopScanBle();
+                            handler.removeCallbacks(attemptTimeout);
+                            cachedDevice = scanDeviceBean.device;
+                            connectBle(cachedDevice);
+                        }
+                    }
+                });
+            }
+        }, scanTimeoutSeconds, 0);
+    }
+
+    private static void connectBle(BluetoothDevice device) {
+
+        String macAddress = targetMac;
+        cachedDevice = device;
+        transition(stateConnecting, 0);
+        handler.postDelayed(attemptTimeout, connectTimeoutMs);
+
+        YcProductPluginConnectionMetrics.onConnectCall();
+        YCBTClient.connectBleDevice(device, new BleConnectResponse() {
+            @Override
+            public void onConnectResponse(int code) {
+                YcProductPluginConnectionMetrics.onConnectResponse(code);
+                if (code == 0 || code == Constants.BLEState.ReadWriteOK) {
+                    return;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (key(macAddress).equals(key(targetMac)) &&
+                                (stateConnecting.equals(state) || stateDiscovering.equals(state))) {
+                            onAttemptFailed("code " + code);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 一次连接失败: 用户发起的连接直接返回失败, 断线重连继续退避
+     */
+    private static void onAttemptFailed(String reason) {
+
+        Log.d("Connection", "attempt " + attempt + " failed: " + reason);
+        YcProductPluginConnectionMetrics.onFailed(reason);
+        handler.removeCallbacks(attemptTimeout);
+        YCBTClient.stopScanBle();
+
+        if (pendingCallback != null) {
+            answer(false);
+            transition(stateIdle, 0);
+            return;
+        }
+        scheduleRetry(reason);
+    }
+
+    private static void scheduleRetry(String reason) {
+
+        if (isOtaInProgress || YCBTClient.isOta()) {
+            // 升级期间由 SDK 回连, 升级结束后 setOtaInProgress(false) 重新开始
+            Log.d("Connection", "ota reconnect: " + reason);
+            transition(stateIdle, 0);
+            return;
+        }
+        if (!isReconnectEnabled || targetMac == null || attempt >= maxAttempts) {
+            Log.d("Connection", "stop reconnect: " + reason);
+            transition(stateIdle, 0);
+            return;
+        }
+
+        long delay = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 16));
+        delay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        attempt++;
+
+        transition(stateBackoff, delay);
+        handler.postDelayed(retry, delay);
+    }
+
+    private static void answer(boolean isReady) {
+        ConnectCallback callback = pendingCallback;
+        pendingCallback = null;
+        if (callback != null) {
+            callback.onResult(isReady);
+        }
+    }
+
+    private static void transition(String to, long delayMs) {
+
+        String from = state;
+        state = to;
+        if (from.equals(to) && !stateBackoff.equals(to)) {
+            return;
+        }
+
+        Log.d("Connection", from + " -> " + to);
+        if (eventSink == null || YcProductPlugin.isAppInBackground) {
+            return;
+        }
+
+        HashMap info = new HashMap();
+        info.put("macAddress", targetMac == null ? "" : targetMac);
+        info.put("from", from);
+        info.put("to", to);
+        info.put("attempt", attempt);
+        info.put("delayMs", delayMs);
+        info.put("timeMs", SystemClock.elapsedRealtime());
+
+        HashMap map = new HashMap();
+        map.put(YcProductPluginFlutterType.NativeEventType.deviceConnectionStateChange, info);
+        eventSink.success(map);
+    }
+}
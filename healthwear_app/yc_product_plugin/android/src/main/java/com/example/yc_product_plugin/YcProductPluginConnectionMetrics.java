@@ -0,0 +1,280 @@
+package com.example.yc_product_plugin;
+
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 连接耗时统计
+ * <p>
+ * 每次连接尝试记录开始 (connectDevice 或重连), 本次尝试自己的扫描开始和第一次收到
+ * 目标设备广播, 调用 connectBleDevice, onConnectResponse 和进入 ReadWriteOK 的时间. 保留最近的记录, 按阶段计算
+ * p50 / p90 / p99, 通过 queryConnectionMetrics 查询, 用来比较不同手机上的连接速度.
+ */
+public class YcProductPluginConnectionMetrics {
+
+    static final String resultRunning = "running";
+    static final String resultReady = "ready";
+    static final String resultFailed = "failed";
+
+    // 保留的记录条数
+    static final int maxRecords = 100;
+
+    /**
+     * 一次连接尝试, 时间都是 elapsedRealtime, 没有发生的为 -1
+     */
+    static class Attempt {
+        String macAddress;
+        String trigger;
+        int attempt;
+        long startMs;
+        long scanStartMs = -1;
+        long advertisementMs = -1;
+        long connectCallMs = -1;
+        long connectResponseMs = -1;
+        int connectResponseCode = -1;
+        long readyMs = -1;
+        long endMs = -1;
+        String result = resultRunning;
+        String reason = "";
+
+        HashMap toMap() {
+            HashMap map = new HashMap();
+            map.put("macAddress", macAddress);
+            map.put("trigger", trigger);
+            map.put("attempt", attempt);
+            map.put("startMs", startMs);
+            map.put("scanStartMs", scanStartMs);
+            map.put("advertisementMs", advertisementMs);
+            map.put("connectCallMs", connectCallMs);
+            map.put("connectResponseMs", connectResponseMs);
+            map.put("connectResponseCode", connectResponseCode);
+            map.put("readyMs", readyMs);
+            map.put("endMs", endMs);
+            map.put("result", result);
+            map.put("reason", reason);
+
+            HashMap durations = new HashMap();
+            for (String phase : phases) {
+                durations.put(phase, duration(phase));
+            }
+            map.put("durations", durations);
+            return map;
+        }
+
+        /**
+         * 阶段耗时 (ms), 阶段没有完成时为 -1
+         */
+        long duration(String phase) {
+            switch (phase) {
+                case "scan":
+                    return between(scanStartMs, advertisementMs);
+                case "connect":
+                    return between(connectCallMs, connectResponseMs);
+                case "discover":
+                    return between(connectResponseMs >= 0 ? connectResponseMs : connectCallMs, readyMs);
+                case "total":
+                    return between(startMs, readyMs);
+                default:
+                    return -1;
+            }
+        }
+
+        private static long between(long fromMs, long toMs) {
+            return fromMs < 0 || toMs < fromMs ? -1 : toMs - fromMs;
+        }
+    }
+
+    // scan: 本次尝试的扫描开始 -> 广播, connect: connectBleDevice -> onConnectResponse,
+    // discover: onConnectResponse -> ReadWriteOK, total: 尝试开始 -> ReadWriteOK
+    static final String[] phases = {"scan", "connect", "discover", "total"};
+
+    private static final ArrayDeque<Attempt> records = new ArrayDeque<>();
+    private static Attempt current;
+
+    private static String key(String macAddress) {
+        return macAddress == null ? "" : macAddress.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 本次连接尝试开始扫描 (用户扫描不计入)
+     */
+    static synchronized void onScanStart() {
+        if (current != null && current.endMs < 0) {
+            current.scanStartMs = SystemClock.elapsedRealtime();
+            current.advertisementMs = -1;
+        }
+    }
+
+    /**
+     * 收到广播 (可以在任意线程调用), 只记录本次尝试扫描到的目标设备
+     */
+    static synchronized void onAdvertisement(String macAddress) {
+        if (current != null && current.endMs < 0 && current.scanStartMs >= 0 &&
+                current.advertisementMs < 0 && key(macAddress).equals(key(current.macAddress))) {
+            current.advertisementMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * 开始一次连接尝试, 上一次没有结束的记为失败
+     *
+     * @param trigger user 或 reconnect
+     */
+    static synchronized void begin(String macAddress, String trigger, int attempt) {
+
+        end(resultFailed, "replaced");
+
+        Attempt record = new Attempt();
+        record.macAddress = macAddress;
+        record.trigger = trigger;
+        record.attempt = attempt;
+        record.startMs = SystemClock.elapsedRealtime();
+
+        current = record;
+        records.addLast(record);
+        while (records.size() > maxRecords) {
+            records.removeFirst();
+        }
+    }
+
+    /**
+     * 调用 connectBleDevice
+     */
+    static synchronized void onConnectCall() {
+        if (current != null && current.endMs < 0) {
+            current.connectCallMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * connectBleDevice 第一次回调
+     */
+    static synchronized void onConnectResponse(int code) {
+        if (current != null && current.endMs < 0 && current.connectCallMs >= 0 && current.connectResponseMs < 0) {
+            current.connectResponseMs = SystemClock.elapsedRealtime();
+            current.connectResponseCode = code;
+        }
+    }
+
+    /**
+     * 进入 ReadWriteOK
+     */
+    static synchronized void onReady() {
+        if (current != null && current.endMs < 0) {
+            current.readyMs = SystemClock.elapsedRealtime();
+            end(resultReady, "");
+        }
+    }
+
+    /**
+     * 连接失败或被取消
+     */
+    static synchronized void onFailed(String reason) {
+        end(resultFailed, reason);
+    }
+
+    private static void end(String result, String reason) {
+        if (current == null || current.endMs >= 0) {
+            return;
+        }
+        current.endMs = SystemClock.elapsedRealtime();
+        current.result = result;
+        current.reason = reason;
+        current = null;
+    }
+
+    /**
+     * 查询连接记录和各阶段的百分位耗时
+     *
+     * @param arguments 返回的最近记录条数 (可选, 默认全部); 为 -1 时清空记录
+     */
+    public static void queryConnectionMetrics(Object arguments, @NonNull MethodChannel.Result result) {
+
+        int limit = arguments == null ? maxRecords : (int) arguments;
+
+        HashMap data = new HashMap();
+        synchronized (YcProductPluginConnectionMetrics.class) {
+
+            if (limit < 0) {
+                records.clear();
+                current = null;
+                limit = 0;
+            }
+
+            ArrayList<Attempt> list = new ArrayList<>(records);
+            int readyCount = 0;
+            int failedCount = 0;
+            for (Attempt record : list) {
+                if (resultReady.equals(record.result)) {
+                    readyCount++;
+                } else if (resultFailed.equals(record.result)) {
+                    failedCount++;
+                }
+            }
+
+            HashMap percentiles = new HashMap();
+            for (String phase : phases) {
+                percentiles.put(phase, percentiles(list, phase));
+            }
+
+            ArrayList<HashMap> attempts = new ArrayList<>();
+            for (int i = Math.max(0, list.size() - limit); i < list.size(); i++) {
+                attempts.add(list.get(i).toMap());
+            }
+
+            data.put("model", Build.MANUFACTURER + " " + Build.MODEL);
+            data.put("sdkInt", Build.VERSION.SDK_INT);
+            data.put("count", list.size());
+            data.put("readyCount", readyCount);
+            data.put("failedCount", failedCount);
+            data.put("percentiles", percentiles);
+            data.put("attempts", attempts);
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", data);
+        result.success(map);
+    }
+
+    /**
+     * 已完成阶段的 p50 / p90 / p99 (nearest-rank), 没有数据时为 -1
+     */
+    private static HashMap percentiles(ArrayList<Attempt> list, String phase) {
+
+        long[] values = new long[list.size()];
+        int count = 0;
+        for (Attempt record : list) {
+            long value = record.duration(phase);
+            if (value >= 0) {
+                values[count++] = value;
+            }
+        }
+        Arrays.sort(values, 0, count);
+
+        HashMap map = new HashMap();
+        map.put("count", count);
+        map.put("p50", rank(values, count, 50));
+        map.put("p90", rank(values, count, 90));
+        map.put("p99", rank(values, count, 99));
+        return map;
+    }
+
+    private static long rank(long[] sorted, int count, int percent) {
+        if (count == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
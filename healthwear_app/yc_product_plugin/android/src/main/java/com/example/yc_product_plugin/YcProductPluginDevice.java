@@ -55,13 +55,6 @@ import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
 
 public class YcProductPluginDevice {
 
-    static boolean isNeedReplay = true;
-
-    static ArrayList<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
-
-
-    static ArrayList<Map<String, BluetoothDevice>> deviceList = new ArrayList<Map<String, BluetoothDevice>>();
-
     private static SpeechRecognizer mIat;
 
     private static HashMap<String, String> mIatResults = new LinkedHashMap<>();
@@ -91,66 +84,10 @@ public class YcProductPluginDevice {
     public static void connectDevice(Context context, Object arguments, @NonNull MethodChannel.Result result) {
 
         Log.d("MARK-", "发起设备连接 Android connectDevice : ");
-        isNeedReplay = true;
         String macAddress = (String) arguments;
 
-        // --- BUG 1: GATT Leak OS-level cleanup pre-check ---
-        try {
-            android.bluetooth.BluetoothManager manager = (android.bluetooth.BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
-            if (manager != null) {
-                List<android.bluetooth.BluetoothDevice> connectedOSDevices = manager.getConnectedDevices(android.bluetooth.BluetoothProfile.GATT);
-                for (android.bluetooth.BluetoothDevice osDevice : connectedOSDevices) {
-                    if (osDevice.getAddress().equalsIgnoreCase(macAddress)) {
-                        Log.d("MARK-", "Device found in OS connected list! Forcing GATT disconnect before YC connection.");
-                        android.bluetooth.BluetoothGatt tempGatt = osDevice.connectGatt(context, false, new android.bluetooth.BluetoothGattCallback() {});
-                        if (tempGatt != null) {
-                            tempGatt.disconnect();
-                            tempGatt.close();
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e("MARK-", "GATT cleanup error: " + e.getMessage());
-        }
-        // ---------------------------------------------------
-
-        BluetoothDevice device = null;
-        for (int i = 0; i < deviceList.size(); i++) {
-            if (deviceList.get(i).containsKey(macAddress)) {
-                device = deviceList.get(i).get(macAddress);
-            }
-//            if(deviceList.get(i).get("macAddress")!=null) {
-//                if (deviceList.get(i).get("macAddress").equals(macAddress)) {
-//                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ECLAIR) {
-//                       device=(BluetoothDevice)deviceList.get(i).get("device");
-//                    }
-//                    break;
-//                }
-//            }
-        }
-        if (device != null) {
-            YCBTClient.connectBleDevice(device, new BleConnectResponse() {
-                @Override
-                public void onConnectResponse(int i) {
-
-                    if (isNeedReplay == false) {
-                        return;
-                    }
-
-                    Log.d("MARK-", "设备连接 onConnectResponse: " + i);
-
-                    isNeedReplay = false;
-                    new Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                        @Override
-                        public void run() {
-                            result.success(0 == i ||
-                                    YCBTClient.connectState() == Constants.BLEState.ReadWriteOK);
-                        }
-                    });
-                }
-            });
-        }
+        // 连接过程 (扫描, 超时, 断线重连) 由状态机处理, ready 或失败时返回
+        YcProductPluginConnection.connect(macAddress, isReady -> result.success(isReady));
     }
 
     /**
@@ -161,7 +98,7 @@ public class YcProductPluginDevice {
      */
     public static void disConnectDevice(Object arguments, @NonNull MethodChannel.Result result) {
         String macAddress = (String) arguments;
-        YCBTClient.disconnectBle();
+        YcProductPluginConnection.disconnect();
         result.success(true);
     }
 
@@ -174,24 +111,29 @@ public class YcProductPluginDevice {
     public static void stopScanDevice(@NonNull MethodChannel.Result result) {
 
         YCBTClient.stopScanBle();
+        YcProductPluginScanSession.stop();
         result.success(null);
     }
 
     /**
      * 搜索设备
+     * <p>
+     * 参数为扫描秒数, 或 {time, intervalMs, macAddress, namePrefix, minRssi}.
+     * 扫描过程中设备通过 EventChannel 发送, 结束后返回这次扫描到的全部设备.
      *
      * @param result
      */
-    public static void scanDevice(Context context, Object arguments, @NonNull MethodChannel.Result result) {
+    public static void scanDevice(Context context, Handler handler, EventChannel.EventSink eventSink,
+                                  Object arguments, @NonNull MethodChannel.Result result) {
 
 
         if (!hasPermission(context)) {
             return;
         }
         YCBTClient.stopScanBle();
-        int time = (int) arguments; // 这里是秒
 
-        list.clear();
+        YcProductPluginScanSession session = YcProductPluginScanSession.start(handler, eventSink, arguments, result);
+        int time = session.getTime(); // 这里是秒
 
 //        YCBTClient.startScanBle(new BleScanResponse() {
 //            @Override
@@ -252,40 +194,8 @@ public class YcProductPluginDevice {
                     Log.d("LHY", "获取设备: " + scanDeviceBean.getDeviceName() + ", " +
                             scanDeviceBean.getDeviceMac() + "," + scanDeviceBean.getDeviceRssi());
 
-                    Map<String, Object> deviceInfo =
-                            new HashMap<String, Object>();
-                    if (TextUtils.isEmpty(scanDeviceBean.getDeviceName())) {
-                        deviceInfo.put("name", scanDeviceBean.getDeviceMac());
-                    } else {
-                        deviceInfo.put("name", scanDeviceBean.getDeviceName());
-                    }
-
-                    deviceInfo.put("macAddress", scanDeviceBean.getDeviceMac());
-                    deviceInfo.put("deviceIdentifier", scanDeviceBean.getDeviceMac());
-                    deviceInfo.put("rssiValue", scanDeviceBean.getDeviceRssi());
-
-                    deviceInfo.put("deviceColor", scanDeviceBean.ringColor);
-                    deviceInfo.put("deviceIndex", scanDeviceBean.ringNumber);
-                    deviceInfo.put("imageIndex", scanDeviceBean.imageId);
-
-
-                    Map<String, BluetoothDevice> deviceInfo2 =
-                            new HashMap<String, BluetoothDevice>();
-                    deviceInfo2.put(scanDeviceBean.getDeviceMac(), scanDeviceBean.device);
-
-                    boolean isHasDevice = false;
-                    for (int j = 0; j < list.size(); j++) {
-                        if (scanDeviceBean.getDeviceMac().equals(list.get(j).get("macAddress"))) {
-//                             isHasDevice = true;
-//                             break;
-                            list.remove(j);
-                            j--;
-                        }
-                    }
-                    //    if (!isHasDevice) {
-                    list.add(deviceInfo);
-                    deviceList.add(deviceInfo2);
-                    //  }
+                    // 同一设备只保留最新的信息
+                    session.onDevice(YcProductPluginScanIndex.update(scanDeviceBean));
 
                 } else {
                     Log.d("LHY", "获取设备: null");
@@ -305,14 +215,6 @@ public class YcProductPluginDevice {
                 return scanBeanTemp;
             }
         }, timeOut, 0);//0x7810
-
-        // 定时任务
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                result.success(list);
-            }
-        }, time * 1000);
     }
 
 
@@ -329,6 +231,7 @@ public class YcProductPluginDevice {
 
             Map map = new HashMap();
             map.put(YcProductPluginFlutterType.NativeEventType.bluetoothStateChange, state);
+            map.put("macAddress", YCBTClient.getBindDeviceMac());
 
             // 如果是DFU怎么办
             if (code == Constants.BLEState.ReadWriteOK) {
@@ -0,0 +1,479 @@
+package com.example.yc_product_plugin;
+
+import android.bluetooth.BluetoothAdapter;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yucheng.ycbtsdk.Constants;
+import com.yucheng.ycbtsdk.YCBTClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 多设备会话管理
+ * <p>
+ * 每台设备一个会话, 有自己的状态, 命令队列和统计. SDK同一时间只能连接一台设备,
+ * 调度器轮流服务有命令的设备: 当前连接的设备连续执行最多 maxCommandsPerTurn 条命令后,
+ * 如果其他设备有等待的命令就断开并连接下一台. 会话事件 (deviceSessionEvent) 都带 MAC.
+ * 所有状态只在主线程修改.
+ */
+public class YcProductPluginDeviceManager {
+
+    /**
+     * 执行插件方法 (与 Flutter 调用相同)
+     */
+    interface CommandDispatcher {
+        void dispatch(String method, Object arguments, MethodChannel.Result result);
+    }
+
+    static final String stateIdle = "idle";
+    static final String stateConnecting = "connecting";
+    static final String stateConnected = "connected";
+    static final String stateDisconnected = "disconnected";
+
+    // 每次连接连续执行的命令数
+    static final int maxCommandsPerTurn = 8;
+
+    // 切换连接的超时, 要大于连接状态机一次扫描加一次连接的时间
+    static final long connectTimeoutMs = (YcProductPluginConnection.scanTimeoutSeconds + 1) * 1000L +
+            YcProductPluginConnection.connectTimeoutMs + 5 * 1000;
+    static final long commandTimeoutMs = 30 * 1000;
+
+    /**
+     * 排队的命令
+     */
+    static class Command {
+        long id;
+        String method;
+        Object arguments;
+        MethodChannel.Result result;
+        long startMs;
+        boolean isDone;
+    }
+
+    /**
+     * 一台设备的会话
+     */
+    static class Session {
+        String macAddress;
+        String state = stateIdle;
+        final ArrayDeque<Command> queue = new ArrayDeque<>();
+        int servedInTurn;
+
+        long commandsCompleted;
+        long commandsFailed;
+        long itemsReceived;
+        long busyMs;
+        long connectedMs;
+        long connectedSinceMs = -1;
+
+        HashMap toMap() {
+
+            long now = SystemClock.elapsedRealtime();
+            long totalConnectedMs = connectedMs + (connectedSinceMs >= 0 ? now - connectedSinceMs : 0);
+
+            HashMap info = new HashMap();
+            info.put("macAddress", macAddress);
+            info.put("state", state);
+            info.put("pendingCommands", queue.size());
+            info.put("commandsCompleted", commandsCompleted);
+            info.put("commandsFailed", commandsFailed);
+            info.put("itemsReceived", itemsReceived);
+            info.put("busyMs", busyMs);
+            info.put("connectedMs", totalConnectedMs);
+            info.put("commandsPerMinute", totalConnectedMs > 0 ? commandsCompleted * 60000.0 / totalConnectedMs : 0.0);
+            info.put("itemsPerSecond", busyMs > 0 ? itemsReceived * 1000.0 / busyMs : 0.0);
+            return info;
+        }
+    }
+
+    private static final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>();
+
+    private static Handler handler;
+    private static CommandDispatcher dispatcher;
+    private static EventChannel.EventSink eventSink;
+
+    // 正在执行的命令
+    private static Command running;
+
+    // 正在切换连接的设备
+    private static Session switchingTo;
+
+    private static long nextCommandId = 1;
+
+    private static final Runnable connectTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (switchingTo != null) {
+                onConnectFailed(switchingTo, "timeout");
+            }
+        }
+    };
+
+    private static boolean isObserving = false;
+
+    static void setup(Handler handler, CommandDispatcher dispatcher) {
+        YcProductPluginDeviceManager.handler = handler;
+        YcProductPluginDeviceManager.dispatcher = dispatcher;
+
+        // SDK支持多个监听, 单独监听蓝牙状态, 不依赖 EventChannel
+        if (!isObserving) {
+            isObserving = true;
+            YCBTClient.registerBleStateChange(code -> onBleStateChange(code));
+        }
+    }
+
+    static void setEventSink(EventChannel.EventSink eventSink) {
+        YcProductPluginDeviceManager.eventSink = eventSink;
+    }
+
+    private static String key(String macAddress) {
+        return macAddress == null ? "" : macAddress.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 添加设备会话
+     *
+     * @param arguments macAddress
+     */
+    public static void addDeviceSession(Object arguments, @NonNull MethodChannel.Result result) {
+
+        String macAddress = (String) arguments;
+        if (macAddress == null || !BluetoothAdapter.checkBluetoothAddress(key(macAddress))) {
+            reply(result, YcProductPluginFlutterType.PluginState.failed, "");
+            return;
+        }
+
+        Session session = sessions.get(key(macAddress));
+        if (session == null) {
+            session = new Session();
+            session.macAddress = key(macAddress);
+            if (session.macAddress.equals(key(YCBTClient.getBindDeviceMac())) &&
+                    YCBTClient.connectState() == Constants.BLEState.ReadWriteOK) {
+                session.state = stateConnected;
+                session.connectedSinceMs = SystemClock.elapsedRealtime();
+            }
+            sessions.put(session.macAddress, session);
+        }
+        reply(result, YcProductPluginFlutterType.PluginState.succeed, session.toMap());
+    }
+
+    /**
+     * 删除设备会话, 排队的命令返回失败
+     *
+     * @param arguments macAddress
+     */
+    public static void removeDeviceSession(Object arguments, @NonNull MethodChannel.Result result) {
+
+        Session session = sessions.remove(key((String) arguments));
+        if (session != null) {
+            failQueued(session, "removed");
+        }
+        reply(result, session == null ?
+                YcProductPluginFlutterType.PluginState.failed :
+                YcProductPluginFlutterType.PluginState.succeed, "");
+    }
+
+    /**
+     * 查询所有会话的状态和统计
+     */
+    public static void queryDeviceSessions(@NonNull MethodChannel.Result result) {
+        ArrayList list = new ArrayList();
+        for (Session session : sessions.values()) {
+            list.add(session.toMap());
+        }
+        reply(result, YcProductPluginFlutterType.PluginState.succeed, list);
+    }
+
+    /**
+     * 把命令加入设备的队列, 轮到这台设备并连接后执行, 结果与直接调用这个方法相同
+     *
+     * @param arguments [macAddress, method, arguments]
+     */
+    public static void enqueueDeviceCommand(Object arguments, @NonNull MethodChannel.Result result) {
+
+        List list = (List) arguments;
+        Session session = list == null || list.size() < 2 ? null : sessions.get(key((String) list.get(0)));
+        if (session == null) {
+            reply(result, YcProductPluginFlutterType.PluginState.failed, "no session");
+            return;
+        }
+
+        Command command = new Command();
+        command.id = nextCommandId++;
+        command.method = (String) list.get(1);
+        command.arguments = list.size() > 2 ? list.get(2) : null;
+        command.result = result;
+        session.queue.add(command);
+
+        schedule();
+    }
+
+    /**
+     * 蓝牙状态变化
+     */
+    private static void onBleStateChange(int code) {
+
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                Session session = sessions.get(key(YCBTClient.getBindDeviceMac()));
+
+                if (code == Constants.BLEState.ReadWriteOK) {
+                    if (session != null) {
+                        setConnected(session);
+                    }
+                    if (switchingTo != null && switchingTo == session) {
+                        handler.removeCallbacks(connectTimeout);
+                        switchingTo = null;
+                    }
+                    schedule();
+
+                } else if (code == Constants.BLEState.Disconnect || code == Constants.BLEState.TimeOut) {
+                    for (Session item : sessions.values()) {
+                        if (stateConnected.equals(item.state)) {
+                            setDisconnected(item);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 选择下一条要执行的命令, 需要时切换连接
+     */
+    private static void schedule() {
+
+        if (running != null || switchingTo != null || sessions.isEmpty()) {
+            return;
+        }
+
+        Session current = null;
+        if (YCBTClient.connectState() == Constants.BLEState.ReadWriteOK) {
+            current = sessions.get(key(YCBTClient.getBindDeviceMac()));
+        }
+
+        Session next = nextSession(current);
+        if (next == null) {
+            return;
+        }
+
+        if (next == current) {
+            run(current, current.queue.poll());
+            return;
+        }
+
+        connect(next);
+    }
+
+    /**
+     * 当前设备还有命令且没用完本轮次数时继续, 否则从它之后按顺序找下一台有命令的设备
+     */
+    private static Session nextSession(Session current) {
+
+        boolean hasOthers = false;
+        for (Session session : sessions.values()) {
+            if (session != current && !session.queue.isEmpty()) {
+                hasOthers = true;
+                break;
+            }
+        }
+
+        if (current != null && !current.queue.isEmpty() &&
+                (current.servedInTurn < maxCommandsPerTurn || !hasOthers)) {
+            if (!hasOthers) {
+                current.servedInTurn = 0;
+            }
+            return current;
+        }
+        if (!hasOthers) {
+            return null;
+        }
+
+        ArrayList<Session> list = new ArrayList<>(sessions.values());
+        int start = current == null ? 0 : list.indexOf(current) + 1;
+        for (int i = 0; i < list.size(); i++) {
+            Session session = list.get((start + i) % list.size());
+            if (session != current && !session.queue.isEmpty()) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 断开当前设备并连接会话的设备
+     */
+    private static void connect(Session session) {
+
+        switchingTo = session;
+        session.servedInTurn = 0;
+        session.state = stateConnecting;
+        event(session, null);
+
+        // 断开当前设备, 扫描和重试由连接状态机处理
+        handler.postDelayed(connectTimeout, connectTimeoutMs);
+        YcProductPluginConnection.connect(session.macAddress, isReady -> {
+            if (switchingTo != session) {
+                return;
+            }
+            if (isReady) {
+                onBleStateChange(Constants.BLEState.ReadWriteOK);
+            } else {
+                onConnectFailed(session, "connect failed");
+            }
+        });
+    }
+
+    private static void onConnectFailed(Session session, String reason) {
+
+        Log.d("DeviceManager", "connect failed: " + session.macAddress + " " + reason);
+        handler.removeCallbacks(connectTimeout);
+        switchingTo = null;
+        setDisconnected(session);
+        failQueued(session, reason);
+        schedule();
+    }
+
+    private static void setConnected(Session session) {
+        if (!stateConnected.equals(session.state)) {
+            session.state = stateConnected;
+            session.connectedSinceMs = SystemClock.elapsedRealtime();
+            event(session, null);
+        }
+    }
+
+    private static void setDisconnected(Session session) {
+        if (session.connectedSinceMs >= 0) {
+            session.connectedMs += SystemClock.elapsedRealtime() - session.connectedSinceMs;
+            session.connectedSinceMs = -1;
+        }
+        session.state = stateDisconnected;
+        event(session, null);
+    }
+
+    /**
+     * 执行一条命令
+     */
+    private static void run(Session session, Command command) {
+
+        running = command;
+        command.startMs = SystemClock.elapsedRealtime();
+
+        Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                complete(session, command, null, "timeout");
+            }
+        };
+        handler.postDelayed(timeout, commandTimeoutMs);
+
+        dispatcher.dispatch(command.method, command.arguments, new MethodChannel.Result() {
+            @Override
+            public void success(@Nullable Object object) {
+                post(object, null);
+            }
+
+            @Override
+            public void error(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+                post(null, errorCode);
+            }
+
+            @Override
+            public void notImplemented() {
+                post(null, "notImplemented");
+            }
+
+            private void post(Object object, String error) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        handler.removeCallbacks(timeout);
+                        complete(session, command, object, error);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void complete(Session session, Command command, Object object, String error) {
+
+        if (command.isDone) {
+            return;
+        }
+        command.isDone = true;
+
+        session.busyMs += SystemClock.elapsedRealtime() - command.startMs;
+        session.servedInTurn++;
+        if (error == null) {
+            session.commandsCompleted++;
+            if (object instanceof Map && ((Map) object).get("data") instanceof List) {
+                session.itemsReceived += ((List) ((Map) object).get("data")).size();
+            }
+            command.result.success(object);
+        } else {
+            session.commandsFailed++;
+            reply(command.result, YcProductPluginFlutterType.PluginState.failed, error);
+        }
+
+        if (running == command) {
+            running = null;
+        }
+        event(session, command);
+        schedule();
+    }
+
+    private static void failQueued(Session session, String reason) {
+        Command command;
+        while ((command = session.queue.poll()) != null) {
+            session.commandsFailed++;
+            command.isDone = true;
+            reply(command.result, YcProductPluginFlutterType.PluginState.failed, reason);
+        }
+    }
+
+    /**
+     * 带 MAC 的会话事件
+     *
+     * @param command 刚完成的命令, 状态变化时为null
+     */
+    private static void event(Session session, Command command) {
+
+        if (eventSink == null || YcProductPlugin.isAppInBackground) {
+            return;
+        }
+
+        HashMap info = session.toMap();
+        info.put("method", command == null ? "" : command.method);
+        info.put("commandId", command == null ? 0 : command.id);
+
+        HashMap map = new HashMap();
+        map.put(YcProductPluginFlutterType.NativeEventType.deviceSessionEvent, info);
+        eventSink.success(map);
+    }
+
+    private static void reply(MethodChannel.Result result, int code, Object data) {
+        HashMap map = new HashMap();
+        map.put("code", code);
+        map.put("data", data);
+        result.success(map);
+    }
+}
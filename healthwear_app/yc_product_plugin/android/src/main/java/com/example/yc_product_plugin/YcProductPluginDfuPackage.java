@@ -0,0 +1,192 @@
+package com.example.yc_product_plugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * DFU zip 包的流式读取
+ * <p>
+ * 条目逐个解压到固定大小的缓冲区 (不解压到磁盘, 也不整个读入内存), 解压时由
+ * ZipInputStream 校验 CRC. 只接受对应平台的条目 (Nordic: manifest.json, .bin, .dat;
+ * 瑞昱: .bin; 杰理: .ufw), manifest 中引用的文件必须存在.
+ */
+public class YcProductPluginDfuPackage {
+
+    // 读取和解压缓冲区大小
+    static final int bufferSize = 16 * 1024;
+
+    // manifest.json 最大长度
+    static final int maxManifestSize = 16 * 1024;
+
+    static final String manifestName = "manifest.json";
+
+    // 各平台允许的条目, 下标为 mcu 平台 (nrf52832, rtk8762c, rtk8762d, jl701n, jl632n)
+    private static final Pattern[] entryPatterns = {
+            Pattern.compile("manifest\\.json|[\\w.-]+\\.(bin|dat)"),
+            Pattern.compile("[\\w.-]+\\.bin"),
+            Pattern.compile("[\\w.-]+\\.bin"),
+            Pattern.compile("[\\w.-]+\\.ufw"),
+            Pattern.compile("[\\w.-]+\\.ufw"),
+    };
+
+    // 未知平台
+    private static final Pattern defaultEntryPattern = Pattern.compile("manifest\\.json|[\\w.-]+\\.(bin|dat|ufw)");
+
+    /**
+     * 条目数据回调
+     */
+    interface EntryConsumer {
+
+        /**
+         * 新条目开始
+         */
+        void onEntry(ZipEntry entry) throws IOException;
+
+        /**
+         * 条目数据, buffer 在回调返回后会被复用
+         */
+        void onData(byte[] buffer, int length) throws IOException;
+    }
+
+    /**
+     * 依次解压每个条目交给 consumer, 条目不在白名单中时抛出异常
+     *
+     * @param mcu  mcu 平台
+     * @param path zip 文件
+     */
+    static void stream(int mcu, String path, EntryConsumer consumer) throws IOException {
+
+        Pattern pattern = mcu >= 0 && mcu < entryPatterns.length ? entryPatterns[mcu] : defaultEntryPattern;
+        YcProductPluginFileLoader.checkFile(path);
+
+        byte[] buffer = new byte[bufferSize];
+        HashSet<String> names = new HashSet<>();
+
+        try (ZipInputStream zip = new ZipInputStream(
+                new BufferedInputStream(new FileInputStream(path), bufferSize))) {
+
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+
+                String name = entry.getName();
+                if (entry.isDirectory() || !pattern.matcher(name).matches()) {
+                    throw new IOException("Unexpected zip entry: " + name);
+                }
+                if (!names.add(name)) {
+                    throw new IOException("Duplicate zip entry: " + name);
+                }
+
+                consumer.onEntry(entry);
+                int read;
+                while ((read = zip.read(buffer)) > 0) {
+                    consumer.onData(buffer, read);
+                }
+                zip.closeEntry();
+            }
+        }
+
+        if (names.isEmpty()) {
+            throw new IOException("Zip has no entries");
+        }
+    }
+
+    /**
+     * 检查整个包, 返回每个条目的名称和解压后大小
+     *
+     * @param mcu  mcu 平台
+     * @param path zip 文件
+     */
+    static ArrayList<HashMap> validate(int mcu, String path) throws IOException {
+
+        ArrayList<HashMap> entries = new ArrayList<>();
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        final long[] entrySize = {0};
+        final boolean[] isManifest = {false};
+
+        stream(mcu, path, new EntryConsumer() {
+            @Override
+            public void onEntry(ZipEntry entry) {
+                closeEntry(entries, entrySize[0]);
+                isManifest[0] = manifestName.equals(entry.getName());
+                entrySize[0] = 0;
+
+                HashMap item = new HashMap();
+                item.put("name", entry.getName());
+                entries.add(item);
+            }
+
+            @Override
+            public void onData(byte[] buffer, int length) throws IOException {
+                entrySize[0] += length;
+                if (isManifest[0]) {
+                    if (manifest.size() + length > maxManifestSize) {
+                        throw new IOException("manifest.json too large");
+                    }
+                    manifest.write(buffer, 0, length);
+                }
+            }
+        });
+        closeEntry(entries, entrySize[0]);
+
+        HashSet<String> names = new HashSet<>();
+        for (HashMap item : entries) {
+            names.add((String) item.get("name"));
+        }
+
+        if (names.contains(manifestName)) {
+            checkManifest(new String(manifest.toByteArray(), StandardCharsets.UTF_8), names);
+        } else if (mcu == YcProductPluginFirmwareVerifier.mcuNrf52832) {
+            throw new IOException("Zip has no manifest.json");
+        }
+        return entries;
+    }
+
+    private static void closeEntry(ArrayList<HashMap> entries, long size) {
+        if (!entries.isEmpty()) {
+            entries.get(entries.size() - 1).put("size", size);
+        }
+    }
+
+    /**
+     * manifest 中的 bin_file, dat_file 必须都在包里
+     */
+    private static void checkManifest(String json, HashSet<String> names) throws IOException {
+
+        try {
+            JSONObject manifest = new JSONObject(json).getJSONObject("manifest");
+            Iterator<String> keys = manifest.keys();
+            int images = 0;
+            while (keys.hasNext()) {
+                JSONObject image = manifest.optJSONObject(keys.next());
+                if (image == null) {
+                    continue;
+                }
+                for (String field : new String[]{"bin_file", "dat_file"}) {
+                    String name = image.optString(field, "");
+                    if (!name.isEmpty() && !names.contains(name)) {
+                        throw new IOException("Missing file in zip: " + name);
+                    }
+                }
+                images++;
+            }
+            if (images == 0) {
+                throw new IOException("manifest.json has no images");
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid manifest.json: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.yc_product_plugin;
+
+import com.yucheng.ycbtsdk.AITools;
+import com.yucheng.ycbtsdk.bean.ImageBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 自定义表盘文件的尺寸信息
+ * <p>
+ * 默认和之前一样交给 AITools 解析 (需要读入整个文件).
+ * headerOnly 时 BMP 和 PNG 的大小和宽高从文件头读取 (一次64字节的定位读取),
+ * 文件头中没有的圆角和缩略图仍然由 AITools 给出; 其他格式 (如SDK的表盘bin) 全部由 AITools 解析.
+ * 结果按路径, 大小, 修改时间和模式缓存.
+ */
+public class YcProductPluginDialHeader {
+
+    // 文件头读取长度
+    static final int headerReadSize = 64;
+
+    // 缓存条数
+    static final int maxCacheEntries = 64;
+
+    private static final byte[] pngSignature = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    private static final LinkedHashMap<String, HashMap> cache = new LinkedHashMap<String, HashMap>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HashMap> eldest) {
+            return size() > maxCacheEntries;
+        }
+    };
+
+    /**
+     * 表盘文件信息, 字段与 queryDeviceCustomWatchFaceInfo 返回一致
+     *
+     * @param path         文件路径
+     * @param isHeaderOnly BMP/PNG 的尺寸取自文件头
+     */
+    static HashMap inspect(String path, boolean isHeaderOnly) throws IOException {
+
+        File file = YcProductPluginFileLoader.checkFile(path);
+        String key = path + "|" + file.length() + "|" + file.lastModified() + "|" + isHeaderOnly;
+
+        synchronized (cache) {
+            HashMap cached = cache.get(key);
+            if (cached != null) {
+                return new HashMap(cached);
+            }
+        }
+
+        HashMap info = parseBySdk(path);
+        HashMap header = isHeaderOnly ? parseHeader(file) : null;
+        if (header != null) {
+            // 圆角和缩略图保留SDK的结果
+            info.put("size", header.get("size"));
+            info.put("width", header.get("width"));
+            info.put("height", header.get("height"));
+        }
+
+        synchronized (cache) {
+            cache.put(key, info);
+        }
+        return new HashMap(info);
+    }
+
+    /**
+     * 只读文件头, 未知格式返回null. 文件头中没有圆角和缩略图, 这些字段为0, 由调用方补充
+     */
+    static HashMap parseHeader(File file) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(headerReadSize).order(ByteOrder.LITTLE_ENDIAN);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        header.flip();
+
+        int width;
+        int height;
+
+        if (header.remaining() >= 26 && header.get(0) == 'B' && header.get(1) == 'M') {
+            // BITMAPFILEHEADER + BITMAPINFOHEADER, 高度为负表示从上到下
+            width = header.getInt(18);
+            height = Math.abs(header.getInt(22));
+        } else if (header.remaining() >= 24 && isPng(header)) {
+            // IHDR 紧跟在签名之后, 大端
+            width = header.order(ByteOrder.BIG_ENDIAN).getInt(16);
+            height = header.getInt(20);
+        } else {
+            return null;
+        }
+
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        return info((int) Math.min(Integer.MAX_VALUE, file.length()), width, height, 0, 0, 0, 0, 0);
+    }
+
+    private static boolean isPng(ByteBuffer header) {
+        for (int i = 0; i < pngSignature.length; i++) {
+            if (header.get(i) != pngSignature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * SDK解析 (需要读入整个文件)
+     */
+    private static HashMap parseBySdk(String path) throws IOException {
+
+        byte[] bins = YcProductPluginFileLoader.readFully(path);
+
+        ImageBean bgImageBean = AITools.getInstance().getBmpSize(bins);
+        ImageBean cpImageBean = AITools.getInstance().getCompressionBmpSize(bins);
+
+        return info(bgImageBean.size, bgImageBean.width, bgImageBean.height, bgImageBean.radius,
+                cpImageBean.size, cpImageBean.width, cpImageBean.height, cpImageBean.radius);
+    }
+
+    private static HashMap info(int size, int width, int height, int radius,
+                                int thumbnailSize, int thumbnailWidth, int thumbnailHeight, int thumbnailRadius) {
+
+        HashMap info = new HashMap();
+        info.put("size", size);
+        info.put("width", width);
+        info.put("height", height);
+        info.put("radius", radius);
+
+        info.put("thumbnailSize", thumbnailSize);
+        info.put("thumbnailWidth", thumbnailWidth);
+        info.put("thumbnailHeight", thumbnailHeight);
+        info.put("thumbnailRadius", thumbnailRadius);
+        return info;
+    }
+}
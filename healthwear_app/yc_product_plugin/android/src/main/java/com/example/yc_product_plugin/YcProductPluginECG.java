@@ -1,6 +1,8 @@
 package com.example.yc_product_plugin;
 
+import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -14,15 +16,34 @@ import com.yucheng.ycbtsdk.response.BleAIDiagnosisResponse;
 import com.yucheng.ycbtsdk.response.BleDataResponse;
 import com.yucheng.ycbtsdk.response.BleRealDataResponse;
 
+import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel;
 
 public class YcProductPluginECG {
 
+    // 默认采样率
+    static final int ecgSampleRate = 250;
+    static final int ppgSampleRate = 50;
+
+    // 显示抽稀, 只用于发送给Flutter的绘图数据
+    static final YcProductPluginWaveDecimator ecgDisplayDecimator = new YcProductPluginWaveDecimator(ecgSampleRate);
+    static final YcProductPluginWaveDecimator ppgDisplayDecimator = new YcProductPluginWaveDecimator(ppgSampleRate);
+
+    // ECG-PPG 同步和PTT, 默认关闭
+    private static volatile boolean isPulseTransitEnabled = false;
+    private static volatile YcProductPluginPulseTransit pulseTransit;
+
+    // 链路统计定时上报, 只在测量期间运行
+    private static int metricsIntervalMs = 0;
+    private static Handler metricsHandler;
+    private static Runnable metricsReporter;
+
     /**
      * 开启ECG测量
      *
@@ -30,6 +51,7 @@ public class YcProductPluginECG {
      * @param result
      */
     public static void startECGMeasurement(
+            Context context,
             Object arguments,
             @NonNull MethodChannel.Result result,
                     Handler handler,
@@ -39,6 +61,18 @@ public class YcProductPluginECG {
         // 算法初始化
         AITools.getInstance().init();
 
+        ecgDisplayDecimator.reset();
+        ppgDisplayDecimator.reset();
+
+        // 全分辨率数据落盘, 用于离线分析和导出
+        YcProductPluginECGRecorder.start(context, ecgSampleRate);
+
+        YcProductPluginECGMetrics.reset(SystemClock.elapsedRealtimeNanos());
+        startMetricsReporter(handler, eventSink);
+
+        pulseTransit = isPulseTransitEnabled ?
+                new YcProductPluginPulseTransit(ecgDisplayDecimator.getSampleRate(), ppgDisplayDecimator.getSampleRate()) : null;
+
         YCBTClient.appEcgTestStart(new BleDataResponse() {
             @Override
             public void onDataResponse(int i, float v, HashMap hashMap) {
@@ -53,6 +87,9 @@ public class YcProductPluginECG {
             @Override
             public void onRealDataResponse(int i, HashMap hashMap) {
 
+                // 两路数据共用的单调时钟
+                long arrivalNs = SystemClock.elapsedRealtimeNanos();
+
 //                Log.e("ECG测量", "onRealDataResponse: " + hashMap + ',' + i );
 
                 // ECG 数据
@@ -61,30 +98,40 @@ public class YcProductPluginECG {
                     ArrayList mvData = (ArrayList) hashMap.get("data");
 //                    Log.e("ECG测量 mvData", "onRealDataResponse: " + mvData );
 
+                    YcProductPluginECGRecorder.append(mvData);
+
+                    YcProductPluginPulseTransit transit = pulseTransit;
+                    if (transit != null) {
+                        postPulseTransit(transit.onEcg(mvData, arrivalNs), handler, eventSink);
+                    }
+
+                    // 原始数据保持全分辨率, 只抽稀绘图用的滤波数据
+                    List displayData = ecgDisplayDecimator.process(mvData);
+
                     HashMap ecgMap = new HashMap();
                     ecgMap.put(YcProductPluginFlutterType.NativeEventType.deviceRealECGData, ecgData);
-                    ecgMap.put(YcProductPluginFlutterType.NativeEventType.deviceRealECGFilteredData, mvData);
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            eventSink.success(ecgMap);
-                        }
-                    });
+                    ecgMap.put(YcProductPluginFlutterType.NativeEventType.deviceRealECGFilteredData, displayData);
+                    postEvent(handler, eventSink, ecgMap);
                 }
 
                 // PPG 数据
                 else if (i == Constants.DATATYPE.Real_UploadPPG && hashMap != null) {
+                    YcProductPluginPulseTransit transit = pulseTransit;
+                    if (transit != null) {
+                        postPulseTransit(transit.onPpg((ArrayList) hashMap.get("data"), arrivalNs), handler, eventSink);
+                    }
+
                     ArrayList ppgData = (ArrayList) hashMap.get("data");
 //                    Log.e("ECG测量", "onRealDataResponse: " + ppgData );
 
+                    // 原始数据保持全分辨率, 抽稀开启时另外发送绘图用的点
                     HashMap ppgMap = new HashMap();
                     ppgMap.put(YcProductPluginFlutterType.NativeEventType.deviceMultiChannelPPGData, ppgData);
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            eventSink.success(ppgMap);
-                        }
-                    });
+                    if (YcProductPluginWaveDecimator.isEnabled()) {
+                        ppgMap.put(YcProductPluginFlutterType.NativeEventType.deviceMultiChannelPPGDisplayData,
+                                ppgDisplayDecimator.process(ppgData));
+                    }
+                    postEvent(handler, eventSink, ppgMap);
                 }
 
                 // 血压数据
@@ -122,12 +169,7 @@ public class YcProductPluginECG {
 
 //                        Log.e("ECG测量 心率血压", "" + bloodPressureInfo);
 
-                        handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                   eventSink.success(bloodPressureInfo);
-                            }
-                        });
+                        postEvent(handler, eventSink, bloodPressureInfo);
                     }
                 }
 
@@ -139,12 +181,7 @@ public class YcProductPluginECG {
                     HashMap rrInfo = new HashMap();
                     rrInfo.put(YcProductPluginFlutterType.NativeEventType.deviceRealECGAlgorithmRR, String.format("%.2f", rr));
 
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            eventSink.success(rrInfo);
-                        }
-                    });
+                    postEvent(handler, eventSink, rrInfo);
                 }
 
                 // HRV
@@ -155,13 +192,7 @@ public class YcProductPluginECG {
 
                     HashMap hrvInfo = new HashMap();
                     hrvInfo.put(YcProductPluginFlutterType.NativeEventType.deviceRealECGAlgorithmHRV, hrv);
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-
-                            eventSink.success(hrvInfo);
-                        }
-                    });
+                    postEvent(handler, eventSink, hrvInfo);
                 }
 
                 else if (i == Constants.DATATYPE.AppECGPPGStatus&& hashMap != null) {
@@ -176,19 +207,188 @@ public class YcProductPluginECG {
 
                     HashMap appECGPPGStatusMap = new HashMap();
                     appECGPPGStatusMap.put(YcProductPluginFlutterType.NativeEventType.appECGPPGStatus, hashMap1);
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
+                    postEvent(handler, eventSink, appECGPPGStatusMap);
 
-                            eventSink.success(appECGPPGStatusMap);
-                        }
-                    });
+                }
 
+                // 链路统计
+                boolean isEcg = i == Constants.DATATYPE.Real_UploadECG;
+                boolean isPpg = i == Constants.DATATYPE.Real_UploadPPG;
+                int sampleCount = 0;
+                if ((isEcg || isPpg) && hashMap != null && hashMap.get("data") instanceof List) {
+                    sampleCount = ((List) hashMap.get("data")).size();
+                }
+                YcProductPluginECGMetrics.onPacket(isEcg, isPpg, sampleCount, arrivalNs,
+                        SystemClock.elapsedRealtimeNanos() - arrivalNs);
                 }
+        });
+    }
+
+    /**
+     * 设置ECG/PPG绘图抽稀
+     *
+     * @param arguments [模式(0 关闭 1 最大最小值 2 LTTB), 每秒点数, ECG采样率(可选), PPG采样率(可选)]
+     * @param result
+     */
+    public static void setWaveDisplayDecimation(Object arguments, @NonNull MethodChannel.Result result) {
+
+        ArrayList list = (ArrayList) arguments;
+        if (list == null || list.size() < 2) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "");
+            result.success(map);
+            return;
+        }
+
+        int mode = (int) list.get(0);
+        int pointsPerSecond = (int) list.get(1);
+
+        if (list.size() > 2 && (int) list.get(2) > 0) {
+            ecgDisplayDecimator.setSampleRate((int) list.get(2));
+        }
+        if (list.size() > 3 && (int) list.get(3) > 0) {
+            ppgDisplayDecimator.setSampleRate((int) list.get(3));
+            YcProductPluginRealData.ppgDisplaySampleRate = (int) list.get(3);
+        }
+
+        YcProductPluginWaveDecimator.setDisplayConfig(mode, pointsPerSecond);
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    /**
+     * 开关ECG-PPG同步和PTT计算, 下次开始测量时生效
+     *
+     * @param arguments 是否开启
+     * @param result
+     */
+    public static void setPulseTransitTimeEnabled(Object arguments, @NonNull MethodChannel.Result result) {
+
+        isPulseTransitEnabled = Boolean.TRUE.equals(arguments);
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    /**
+     * 发送PTT
+     */
+    private static void postPulseTransit(List<HashMap> beats, Handler handler, EventChannel.EventSink eventSink) {
+
+        for (HashMap beat : beats) {
+            HashMap pttMap = new HashMap();
+            pttMap.put(YcProductPluginFlutterType.NativeEventType.deviceRealPulseTransitTime, beat);
+            postEvent(handler, eventSink, pttMap);
+        }
+    }
+
+    /**
+     * 在主线程发送测量事件, 同时记录排队延迟和丢弃数
+     */
+    private static void postEvent(Handler handler, EventChannel.EventSink eventSink, Object event) {
+
+        long postNs = SystemClock.elapsedRealtimeNanos();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                boolean isSent = eventSink != null && !YcProductPlugin.isAppInBackground;
+                if (isSent) {
+                    eventSink.success(event);
                 }
+                YcProductPluginECGMetrics.onEventDelivered(SystemClock.elapsedRealtimeNanos() - postNs, isSent);
+            }
         });
     }
 
+    /**
+     * 查询ECG链路统计
+     *
+     * @param result
+     */
+    public static void getECGMetrics(@NonNull MethodChannel.Result result) {
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", YcProductPluginECGMetrics.snapshot(SystemClock.elapsedRealtimeNanos()));
+        result.success(map);
+    }
+
+    /**
+     * 设置ECG链路统计的定时上报, 测量开始时生效, 测量结束时停止
+     *
+     * @param arguments 上报间隔 (ms), 0 关闭
+     * @param result
+     * @param handler
+     * @param eventSink
+     */
+    public static void setECGMetricsInterval(
+            Object arguments,
+            @NonNull MethodChannel.Result result,
+            Handler handler,
+            EventChannel.EventSink eventSink) {
+
+        metricsIntervalMs = arguments == null ? 0 : (int) arguments;
+
+        // 测量中修改间隔时立即按新间隔上报
+        if (metricsReporter != null) {
+            startMetricsReporter(handler, eventSink);
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    /**
+     * 开始定时上报链路统计
+     */
+    private static void startMetricsReporter(Handler handler, EventChannel.EventSink eventSink) {
+
+        stopMetricsReporter();
+
+        int interval = metricsIntervalMs;
+        if (interval <= 0 || handler == null || eventSink == null) {
+            return;
+        }
+
+        metricsHandler = handler;
+        metricsReporter = new Runnable() {
+            @Override
+            public void run() {
+                if (metricsReporter != this) {
+                    return;
+                }
+                if (!YcProductPlugin.isAppInBackground) {
+                    HashMap metricsMap = new HashMap();
+                    metricsMap.put(YcProductPluginFlutterType.NativeEventType.ecgPipelineMetrics,
+                            YcProductPluginECGMetrics.snapshot(SystemClock.elapsedRealtimeNanos()));
+                    eventSink.success(metricsMap);
+                }
+                handler.postDelayed(this, interval);
+            }
+        };
+        handler.postDelayed(metricsReporter, interval);
+    }
+
+    /**
+     * 停止定时上报链路统计
+     */
+    private static void stopMetricsReporter() {
+
+        if (metricsReporter != null && metricsHandler != null) {
+            metricsHandler.removeCallbacks(metricsReporter);
+        }
+        metricsReporter = null;
+        metricsHandler = null;
+    }
+
     /**
      * 结束ECG测量
      *
@@ -197,6 +397,11 @@ public class YcProductPluginECG {
      */
     public static void stopECGMeasurement(Object arguments, @NonNull MethodChannel.Result result) {
 
+        YcProductPluginECGRecorder.stop();
+        pulseTransit = null;
+        stopMetricsReporter();
+        YcProductPluginECGMetrics.stop();
+
         YCBTClient.appEcgTestEnd(new BleDataResponse() {
             @Override
             public void onDataResponse(int i, float v, HashMap hashMap) {
@@ -276,4 +481,224 @@ public class YcProductPluginECG {
             }
         });
     }
+
+    /**
+     * 查询已保存的ECG会话
+     *
+     * @param context
+     * @param result
+     */
+    public static void queryECGSessions(Context context, @NonNull MethodChannel.Result result) {
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", YcProductPluginECGRecorder.listSessions(context));
+        result.success(map);
+    }
+
+    /**
+     * 删除ECG会话
+     *
+     * @param context
+     * @param arguments 会话ID
+     * @param result
+     */
+    public static void deleteECGSession(Context context, Object arguments, @NonNull MethodChannel.Result result) {
+
+        boolean isDeleted = arguments instanceof String &&
+                YcProductPluginECGRecorder.deleteSession(context, (String) arguments);
+
+        HashMap map = new HashMap();
+        map.put("code", isDeleted ? YcProductPluginFlutterType.PluginState.succeed :
+                YcProductPluginFlutterType.PluginState.failed);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    /**
+     * 批量离线分析ECG会话
+     *
+     * @param context
+     * @param arguments [会话ID列表, 窗口秒数(可选)]
+     * @param result    会话ID -> 分析结果, 不存在的会话为 {error}
+     * @param handler
+     * @param eventSink 分析进度
+     */
+    public static void analyzeECGSessions(
+            Context context,
+            Object arguments,
+            @NonNull MethodChannel.Result result,
+            Handler handler,
+            EventChannel.EventSink eventSink
+    ) {
+
+        ArrayList list = (ArrayList) arguments;
+        if (list == null || list.isEmpty() || !(list.get(0) instanceof List)) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "");
+            result.success(map);
+            return;
+        }
+
+        List sessionIds = (List) list.get(0);
+        int windowSeconds = list.size() > 1 && list.get(1) != null ?
+                (int) list.get(1) : YcProductPluginECGAnalyzer.defaultWindowSeconds;
+
+        // 无效或不存在的会话ID在结果中记为失败, 不静默丢弃
+        HashMap<String, File> files = new HashMap<>();
+        HashMap<String, HashMap> missing = new HashMap<>();
+        for (Object sessionId : sessionIds) {
+            File file = YcProductPluginECGRecorder.sessionFile(context, String.valueOf(sessionId));
+            if (file != null && file.exists()) {
+                files.put(String.valueOf(sessionId), file);
+            } else {
+                HashMap info = new HashMap();
+                info.put("error", "session not found");
+                missing.put(String.valueOf(sessionId), info);
+            }
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                HashMap map = new HashMap();
+                try {
+                    HashMap<String, HashMap> sessions = YcProductPluginECGAnalyzer.analyzeSessions(
+                            files,
+                            windowSeconds,
+                            new YcProductPluginECGAnalyzer.ProgressListener() {
+                                @Override
+                                public void onProgress(String sessionId, int finishedWindows, int totalWindows) {
+
+                                    // 每5%上报一次
+                                    int step = Math.max(1, totalWindows / 20);
+                                    if (finishedWindows % step != 0 && finishedWindows != totalWindows) {
+                                        return;
+                                    }
+
+                                    HashMap progressInfo = new HashMap();
+                                    progressInfo.put("sessionId", sessionId);
+                                    progressInfo.put("finished", finishedWindows);
+                                    progressInfo.put("total", totalWindows);
+
+                                    HashMap progressMap = new HashMap();
+                                    progressMap.put(YcProductPluginFlutterType.NativeEventType.ecgAnalysisProgress, progressInfo);
+
+                                    handler.post(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            if (eventSink != null) eventSink.success(progressMap);
+                                        }
+                                    });
+                                }
+                            }
+                    );
+
+                    // 部分会话不存在时仍返回其他会话的结果, 全部不存在时失败
+                    sessions.putAll(missing);
+                    map.put("code", files.isEmpty() ?
+                            YcProductPluginFlutterType.PluginState.failed :
+                            YcProductPluginFlutterType.PluginState.succeed);
+                    map.put("data", sessions);
+
+                } catch (Exception e) {
+                    Log.e("ECG分析", "analyzeECGSessions: " + e.getMessage());
+                    map.put("code", YcProductPluginFlutterType.PluginState.failed);
+                    map.put("data", "" + e.getMessage());
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(map);
+                    }
+                });
+            }
+        }, "ECGAnalysis").start();
+    }
+
+    /**
+     * 导出ECG会话为EDF (可选WFDB)
+     *
+     * @param methodChannel 导出进度回调 upgradeState (code 为 exportingECG)
+     * @param handler
+     * @param context
+     * @param arguments     [会话ID, EDF路径, WFDB记录路径(可选, 不含扩展名), 物理单位(可选)]
+     * @param result
+     */
+    public static void exportECGSession(
+            MethodChannel methodChannel,
+            Handler handler,
+            Context context,
+            Object arguments,
+            @NonNull MethodChannel.Result result) {
+
+        ArrayList list = (ArrayList) arguments;
+        if (list == null || list.size() < 2) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "");
+            result.success(map);
+            return;
+        }
+
+        String sessionId = String.valueOf(list.get(0));
+        String edfPath = (String) list.get(1);
+        String wfdbRecord = list.size() > 2 ? (String) list.get(2) : null;
+        String unit = list.size() > 3 ? (String) list.get(3) : null;
+
+        File sessionFile = YcProductPluginECGRecorder.sessionFile(context, sessionId);
+        if (sessionFile == null || !sessionFile.exists()) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "session not found");
+            result.success(map);
+            return;
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                HashMap map = new HashMap();
+                try {
+                    YcProductPluginECGExporter.export(sessionFile, new File(edfPath), wfdbRecord, unit,
+                            new YcProductPluginECGExporter.ProgressListener() {
+                                @Override
+                                public void onProgress(float progress) {
+
+                                    HashMap info = new HashMap();
+                                    info.put("code", YcProductPluginFlutterType.DeviceUpdateState.exportingECG);
+                                    info.put("progress", (double) progress);
+                                    info.put("error", "");
+
+                                    handler.post(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            methodChannel.invokeMethod("upgradeState", info);
+                                        }
+                                    });
+                                }
+                            });
+
+                    map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                    map.put("data", edfPath);
+
+                } catch (Exception e) {
+                    Log.e("ECG导出", "exportECGSession: " + e.getMessage());
+                    map.put("code", YcProductPluginFlutterType.PluginState.failed);
+                    map.put("data", "" + e.getMessage());
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(map);
+                    }
+                });
+            }
+        }, "ECGExport").start();
+    }
 }
@@ -0,0 +1,546 @@
+package com.example.yc_product_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ECG离线分析
+ * <p>
+ * 把已保存的会话切成固定长度的窗口, 在ForkJoin线程池上分两轮并行:
+ * 先做每个窗口的R波检测, 再用前面窗口的最后几个R波作为上下文, 对每个窗口做心拍分类
+ * 和RR统计. 最后只按会话合并各窗口的计数和RR统计量.
+ */
+public class YcProductPluginECGAnalyzer {
+
+    /// 心拍类型, 与SDK的qrstype保持一致
+    static final int beatNormal = 1;                // 正常心拍
+    static final int beatVentricularPremature = 5;  // 室早心拍
+    static final int beatAtrialPremature = 9;       // 房早心拍
+    static final int beatNoise = 14;                // 噪声
+
+    // 窗口长度和前后重叠, 重叠区保证窗口边界上的R波不丢失
+    static final int defaultWindowSeconds = 30;
+    static final float overlapSeconds = 1.0f;
+
+    // 窗口任务拆分阈值
+    private static final int leafWindowCount = 2;
+
+    // 心拍分类的上下文: 窗口之前的R波数 (参考RR取最近8个正常RR)
+    static final int contextBeats = 16;
+
+    private static ForkJoinPool pool;
+
+    /**
+     * 分析进度
+     */
+    interface ProgressListener {
+        void onProgress(String sessionId, int finishedWindows, int totalWindows);
+    }
+
+    /**
+     * 单个窗口
+     */
+    static class Window {
+        String sessionId;
+        File file;
+        int sampleRate;
+        long start;     // 窗口起点 (包含)
+        long end;       // 窗口终点 (不包含)
+        long total;     // 会话总采样数
+    }
+
+    /**
+     * 窗口结果
+     */
+    static class WindowResult {
+        long[] peaks = new long[0];     // R波位置 (会话内采样序号)
+        int[] qrsWidths = new int[0];   // QRS宽度 (采样点)
+        int noiseSamples;
+    }
+
+    /**
+     * 窗口的心拍分类和正常RR统计, 可以按任意顺序合并
+     */
+    static class WindowStats {
+        int beats;
+        int normal;
+        int ventricular;
+        int atrial;
+        int noise;
+
+        // 正常RR (ms) 的个数, 均值和离差平方和
+        long rrCount;
+        double rrMean;
+        double rrM2;
+
+        // 相邻正常RR之差
+        long successiveCount;
+        double successiveSquares;
+        int nn50;
+
+        void addNormalRR(double rr) {
+            rrCount++;
+            double delta = rr - rrMean;
+            rrMean += delta / rrCount;
+            rrM2 += delta * (rr - rrMean);
+        }
+
+        void merge(WindowStats other) {
+            beats += other.beats;
+            normal += other.normal;
+            ventricular += other.ventricular;
+            atrial += other.atrial;
+            noise += other.noise;
+
+            long count = rrCount + other.rrCount;
+            if (count > 0) {
+                double delta = other.rrMean - rrMean;
+                rrM2 += other.rrM2 + delta * delta * rrCount * other.rrCount / count;
+                rrMean += delta * other.rrCount / count;
+            }
+            rrCount = count;
+
+            successiveCount += other.successiveCount;
+            successiveSquares += other.successiveSquares;
+            nn50 += other.nn50;
+        }
+    }
+
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        }
+        return pool;
+    }
+
+    /**
+     * 批量分析
+     *
+     * @param files         会话ID -> 会话文件
+     * @param windowSeconds 窗口长度 (秒)
+     * @param listener      进度
+     * @return 每个会话的分析结果
+     */
+    static HashMap<String, HashMap> analyzeSessions(
+            HashMap<String, File> files,
+            int windowSeconds,
+            ProgressListener listener) throws IOException {
+
+        if (windowSeconds <= 0) {
+            windowSeconds = defaultWindowSeconds;
+        }
+
+        ArrayList<Window> windows = new ArrayList<>();
+        HashMap<String, Integer> windowCounts = new HashMap<>();
+        HashMap<String, Integer> sampleRates = new HashMap<>();
+        HashMap<String, Long> sampleCounts = new HashMap<>();
+
+        for (String sessionId : files.keySet()) {
+            File file = files.get(sessionId);
+            YcProductPluginECGRecorder.Header header;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                header = YcProductPluginECGRecorder.readHeader(raf.getChannel());
+            }
+
+            long windowSize = (long) windowSeconds * header.sampleRate;
+            int count = 0;
+            for (long start = 0; start < header.sampleCount; start += windowSize) {
+                Window window = new Window();
+                window.sessionId = sessionId;
+                window.file = file;
+                window.sampleRate = header.sampleRate;
+                window.start = start;
+                window.end = Math.min(header.sampleCount, start + windowSize);
+                window.total = header.sampleCount;
+                windows.add(window);
+                count++;
+            }
+
+            windowCounts.put(sessionId, count);
+            sampleRates.put(sessionId, header.sampleRate);
+            sampleCounts.put(sessionId, header.sampleCount);
+        }
+
+        HashMap<String, AtomicInteger> finished = new HashMap<>();
+        for (String sessionId : files.keySet()) {
+            finished.put(sessionId, new AtomicInteger());
+        }
+
+        WindowResult[] results;
+        try {
+            results = pool().invoke(new WindowTask(windows, 0, windows.size(), windowCounts, finished, listener));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        WindowStats[] stats = pool().invoke(new StatsTask(windows, results, 0, windows.size()));
+
+        // 按会话合并, 窗口本身按时间顺序排列
+        HashMap<String, HashMap> merged = new HashMap<>();
+        int index = 0;
+        for (String sessionId : files.keySet()) {
+            int count = windowCounts.get(sessionId);
+            merged.put(sessionId, mergeSession(
+                    Arrays.copyOfRange(stats, index, index + count),
+                    sampleRates.get(sessionId),
+                    sampleCounts.get(sessionId)
+            ));
+            index += count;
+        }
+        return merged;
+    }
+
+    /**
+     * 窗口任务, 按窗口区间二分
+     */
+    static class WindowTask extends RecursiveTask<WindowResult[]> {
+
+        private final List<Window> windows;
+        private final int from;
+        private final int to;
+        private final HashMap<String, Integer> windowCounts;
+        private final HashMap<String, AtomicInteger> finished;
+        private final ProgressListener listener;
+
+        WindowTask(List<Window> windows, int from, int to,
+                   HashMap<String, Integer> windowCounts,
+                   HashMap<String, AtomicInteger> finished,
+                   ProgressListener listener) {
+            this.windows = windows;
+            this.from = from;
+            this.to = to;
+            this.windowCounts = windowCounts;
+            this.finished = finished;
+            this.listener = listener;
+        }
+
+        @Override
+        protected WindowResult[] compute() {
+
+            if (to - from <= leafWindowCount) {
+                WindowResult[] results = new WindowResult[to - from];
+                for (int i = from; i < to; i++) {
+                    Window window = windows.get(i);
+                    results[i - from] = analyzeWindow(window);
+                    int done = finished.get(window.sessionId).incrementAndGet();
+                    if (listener != null) {
+                        listener.onProgress(window.sessionId, done, windowCounts.get(window.sessionId));
+                    }
+                }
+                return results;
+            }
+
+            int mid = (from + to) >>> 1;
+            WindowTask left = new WindowTask(windows, from, mid, windowCounts, finished, listener);
+            WindowTask right = new WindowTask(windows, mid, to, windowCounts, finished, listener);
+            left.fork();
+            WindowResult[] rightResults = right.compute();
+            WindowResult[] leftResults = left.join();
+
+            WindowResult[] results = new WindowResult[leftResults.length + rightResults.length];
+            System.arraycopy(leftResults, 0, results, 0, leftResults.length);
+            System.arraycopy(rightResults, 0, results, leftResults.length, rightResults.length);
+            return results;
+        }
+    }
+
+    /**
+     * 分类任务, 每个窗口从前面窗口取上下文R波, 与其他窗口无关
+     */
+    static class StatsTask extends RecursiveTask<WindowStats[]> {
+
+        private final List<Window> windows;
+        private final WindowResult[] results;
+        private final int from;
+        private final int to;
+
+        StatsTask(List<Window> windows, WindowResult[] results, int from, int to) {
+            this.windows = windows;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected WindowStats[] compute() {
+
+            if (to - from <= leafWindowCount) {
+                WindowStats[] stats = new WindowStats[to - from];
+                for (int i = from; i < to; i++) {
+                    stats[i - from] = classifyWindow(contextPeaks(windows, results, i),
+                            results[i].peaks, results[i].qrsWidths, windows.get(i).sampleRate);
+                }
+                return stats;
+            }
+
+            int mid = (from + to) >>> 1;
+            StatsTask left = new StatsTask(windows, results, from, mid);
+            StatsTask right = new StatsTask(windows, results, mid, to);
+            left.fork();
+            WindowStats[] rightStats = right.compute();
+            WindowStats[] leftStats = left.join();
+
+            WindowStats[] stats = new WindowStats[leftStats.length + rightStats.length];
+            System.arraycopy(leftStats, 0, stats, 0, leftStats.length);
+            System.arraycopy(rightStats, 0, stats, leftStats.length, rightStats.length);
+            return stats;
+        }
+    }
+
+    /**
+     * 同一会话中窗口之前的最后 contextBeats 个R波
+     */
+    static long[] contextPeaks(List<Window> windows, WindowResult[] results, int index) {
+
+        String sessionId = windows.get(index).sessionId;
+        int needed = contextBeats;
+        int first = index;
+        while (needed > 0 && first > 0 && windows.get(first - 1).sessionId.equals(sessionId)) {
+            first--;
+            needed -= results[first].peaks.length;
+        }
+
+        long[] context = new long[contextBeats - Math.max(0, needed)];
+        int offset = context.length;
+        for (int i = index - 1; i >= first && offset > 0; i--) {
+            long[] peaks = results[i].peaks;
+            int take = Math.min(offset, peaks.length);
+            System.arraycopy(peaks, peaks.length - take, context, offset - take, take);
+            offset -= take;
+        }
+        return context;
+    }
+
+    /**
+     * 分析单个窗口, 只保留核心区间内的R波. 读取失败时抛出 UncheckedIOException, 整个分析失败
+     */
+    static WindowResult analyzeWindow(Window window) {
+
+        int overlap = (int) (overlapSeconds * window.sampleRate);
+        long readStart = Math.max(0, window.start - overlap);
+        long readEnd = Math.min(window.total, window.end + overlap);
+        int count = (int) (readEnd - readStart);
+
+        float[] samples = new float[count];
+        try (RandomAccessFile raf = new RandomAccessFile(window.file, "r")) {
+            FileChannel fileChannel = raf.getChannel();
+            YcProductPluginECGRecorder.readSamples(fileChannel, readStart, samples, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Read " + window.sessionId + " failed: " + e.getMessage(), e);
+        }
+
+        int[] peaks = detectRPeaks(samples, count, window.sampleRate);
+
+        int kept = 0;
+        long[] positions = new long[peaks.length];
+        int[] widths = new int[peaks.length];
+        for (int peak : peaks) {
+            long position = readStart + peak;
+            if (position >= window.start && position < window.end) {
+                positions[kept] = position;
+                widths[kept] = qrsWidth(samples, count, peak, window.sampleRate);
+                kept++;
+            }
+        }
+
+        WindowResult result = new WindowResult();
+        result.peaks = Arrays.copyOf(positions, kept);
+        result.qrsWidths = Arrays.copyOf(widths, kept);
+        return result;
+    }
+
+    /**
+     * R波检测, 与实时PTT共用 YcProductPluginRPeakDetector, 初始阈值取窗口前2秒
+     *
+     * @return R波在samples中的位置
+     */
+    static int[] detectRPeaks(float[] samples, int count, int sampleRate) {
+
+        if (count < 3 || sampleRate <= 0) {
+            return new int[0];
+        }
+
+        YcProductPluginRPeakDetector detector = new YcProductPluginRPeakDetector(sampleRate);
+        detector.learn(samples, count);
+
+        int[] peaks = new int[Math.max(4, count / Math.max(1, (int) (0.200f * sampleRate)))];
+        int peakCount = 0;
+        for (int i = 0; i < count; i++) {
+            long peak = detector.add(samples[i]);
+            if (peak >= 0) {
+                if (peakCount == peaks.length) {
+                    peaks = Arrays.copyOf(peaks, peaks.length * 2);
+                }
+                peaks[peakCount++] = (int) peak;
+            }
+        }
+
+        return Arrays.copyOf(peaks, peakCount);
+    }
+
+    /**
+     * QRS宽度: R波两侧幅值降到峰值一半的距离
+     */
+    static int qrsWidth(float[] samples, int count, int peak, int sampleRate) {
+
+        float half = Math.abs(samples[peak]) * 0.5f;
+        int limit = (int) (0.2f * sampleRate);
+
+        int left = peak;
+        while (left > 0 && peak - left < limit && Math.abs(samples[left]) > half) {
+            left--;
+        }
+        int right = peak;
+        while (right < count - 1 && right - peak < limit && Math.abs(samples[right]) > half) {
+            right++;
+        }
+        // 半高宽约为QRS宽度的一半
+        return (right - left) * 2;
+    }
+
+    /**
+     * 窗口的心拍分类: RR与前8个正常RR的均值比较. 上下文R波只用于建立参考RR, 不计数
+     *
+     * @param context   窗口之前的R波 (会话开头为空)
+     * @param peaks     窗口内的R波
+     * @param widths    窗口内R波的QRS宽度
+     */
+    static WindowStats classifyWindow(long[] context, long[] peaks, int[] widths, int sampleRate) {
+
+        WindowStats stats = new WindowStats();
+        int wideQrs = (int) (0.12f * sampleRate);
+
+        double[] recentRR = new double[8];
+        int recentCount = 0;
+        int recentNext = 0;
+        double runningRR = 0;
+        double lastNormalRR = -1;
+        long previous = -1;
+
+        for (int i = 0; i < context.length + peaks.length; i++) {
+
+            boolean isCounted = i >= context.length;
+            long peak = isCounted ? peaks[i - context.length] : context[i];
+
+            // 会话的第一个心拍没有RR, 记为正常
+            if (previous < 0) {
+                previous = peak;
+                if (isCounted) {
+                    stats.beats++;
+                    stats.normal++;
+                }
+                continue;
+            }
+
+            double rr = (peak - previous) * 1000.0 / sampleRate;
+            previous = peak;
+
+            int type = beatNormal;
+            if (rr < 300 || rr > 2000) {
+                type = beatNoise;
+            } else if (recentCount >= 3 && rr < 0.8 * runningRR / recentCount) {
+                type = isCounted && widths[i - context.length] > wideQrs ?
+                        beatVentricularPremature : beatAtrialPremature;
+            }
+
+            if (isCounted) {
+                stats.beats++;
+                if (type == beatNormal) {
+                    stats.normal++;
+                    stats.addNormalRR(rr);
+                    if (lastNormalRR >= 0) {
+                        double diff = rr - lastNormalRR;
+                        stats.successiveCount++;
+                        stats.successiveSquares += diff * diff;
+                        if (Math.abs(diff) > 50) {
+                            stats.nn50++;
+                        }
+                    }
+                } else if (type == beatVentricularPremature) {
+                    stats.ventricular++;
+                } else if (type == beatAtrialPremature) {
+                    stats.atrial++;
+                } else {
+                    stats.noise++;
+                }
+            }
+
+            if (type == beatNormal) {
+                lastNormalRR = rr;
+                // 最近8个正常RR的滑动和
+                int slot = recentNext;
+                recentNext = (recentNext + 1) % recentRR.length;
+                if (recentCount == recentRR.length) {
+                    runningRR -= recentRR[slot];
+                } else {
+                    recentCount++;
+                }
+                recentRR[slot] = rr;
+                runningRR += rr;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 合并会话的窗口结果: 心率, HRV, 心拍分类
+     */
+    static HashMap mergeSession(WindowStats[] windows, int sampleRate, long sampleCount) {
+
+        WindowStats total = new WindowStats();
+        for (WindowStats window : windows) {
+            total.merge(window);
+        }
+
+        HashMap info = new HashMap();
+        info.put("sampleCount", sampleCount);
+        info.put("duration", sampleRate > 0 ? sampleCount / sampleRate : 0);
+        info.put("beatCount", total.beats);
+
+        if (total.beats < 3 || sampleRate <= 0) {
+            info.put("qrsType", beatNoise);
+            return info;
+        }
+
+        // 正常RR计算HRV
+        long n = total.rrCount;
+        double mean = total.rrMean;
+        double sdnn = n > 1 ? Math.sqrt(total.rrM2 / (n - 1)) : 0;
+        double rmssd = total.successiveCount > 0 ? Math.sqrt(total.successiveSquares / total.successiveCount) : 0;
+        double pnn50 = total.successiveCount > 0 ? total.nn50 * 100.0 / total.successiveCount : 0;
+
+        int qrsType = beatNormal;
+        if (total.noise > total.beats / 2) {
+            qrsType = beatNoise;
+        } else if (total.ventricular > 0 && total.ventricular >= total.atrial) {
+            qrsType = beatVentricularPremature;
+        } else if (total.atrial > 0) {
+            qrsType = beatAtrialPremature;
+        }
+
+        info.put("heartRate", mean > 0 ? (int) Math.round(60000.0 / mean) : 0);
+        info.put("qrsType", qrsType);
+        info.put("normalBeats", total.normal);
+        info.put("ventricularPrematureBeats", total.ventricular);
+        info.put("atrialPrematureBeats", total.atrial);
+        info.put("noiseBeats", total.noise);
+        info.put("meanRR", String.format("%.1f", mean));
+        info.put("sdnn", String.format("%.1f", sdnn));
+        info.put("rmssd", String.format("%.1f", rmssd));
+        info.put("pnn50", String.format("%.1f", pnn50));
+        // RR不规则 (房颤筛查提示, 不是诊断)
+        info.put("afflag", mean > 0 && rmssd / mean > 0.1 && pnn50 > 40);
+
+        return info;
+    }
+}
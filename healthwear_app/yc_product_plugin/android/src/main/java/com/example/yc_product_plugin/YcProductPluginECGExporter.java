@@ -0,0 +1,306 @@
+package com.example.yc_product_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * ECG会话导出 (EDF, 可选WFDB .hea + .dat)
+ * <p>
+ * 从会话文件按固定大小的块读取, 直接转换写出, 不把整个记录读入内存.
+ */
+public class YcProductPluginECGExporter {
+
+    // 每次读写的采样数
+    static final int blockSamples = 16 * 1024;
+
+    static final int digitalMin = -32768;
+    static final int digitalMax = 32767;
+
+    /**
+     * 导出进度
+     */
+    interface ProgressListener {
+        void onProgress(float progress);
+    }
+
+    /**
+     * 导出
+     *
+     * @param sessionFile 会话文件
+     * @param edfFile     EDF输出
+     * @param wfdbRecord  WFDB记录路径 (不含扩展名), 为null时不导出WFDB
+     * @param unit        物理单位, mV (默认) 或 uV
+     * @param listener    进度
+     */
+    static void export(File sessionFile, File edfFile, String wfdbRecord, String unit, ProgressListener listener) throws IOException {
+
+        // 会话中保存的是SDK的 mV 数据, 要求 uV 时换算
+        if (unit == null || unit.isEmpty()) {
+            unit = "mV";
+        }
+        float unitScale = "uV".equalsIgnoreCase(unit) ? 1000f : 1f;
+
+        try (RandomAccessFile input = new RandomAccessFile(sessionFile, "r");
+             RandomAccessFile edf = new RandomAccessFile(edfFile, "rw")) {
+
+            FileChannel inChannel = input.getChannel();
+            YcProductPluginECGRecorder.Header header = YcProductPluginECGRecorder.readHeader(inChannel);
+            if (header.sampleRate <= 0) {
+                throw new IOException("Invalid sample rate");
+            }
+
+            ByteBuffer inBuffer = ByteBuffer.allocateDirect(blockSamples * YcProductPluginECGRecorder.bytesPerSample)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer outBuffer = ByteBuffer.allocateDirect(blockSamples * 2)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            // 第一遍: 物理量范围
+            float physicalMin = Float.MAX_VALUE;
+            float physicalMax = -Float.MAX_VALUE;
+            long position = YcProductPluginECGRecorder.headerSize;
+            long remaining = header.sampleCount;
+            while (remaining > 0) {
+                FloatBuffer floats = readBlock(inChannel, inBuffer, position, (int) Math.min(blockSamples, remaining));
+                int count = floats.remaining();
+                if (count == 0) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    float value = floats.get(i) * header.scale * unitScale;
+                    if (value < physicalMin) physicalMin = value;
+                    if (value > physicalMax) physicalMax = value;
+                }
+                position += (long) count * YcProductPluginECGRecorder.bytesPerSample;
+                remaining -= count;
+            }
+
+            if (physicalMin > physicalMax) {
+                physicalMin = -1;
+                physicalMax = 1;
+            }
+            if (physicalMax - physicalMin < 1e-3f) {
+                physicalMax = physicalMin + 1;
+            }
+
+            // EDF字段只有8个字符, 用字段里的值计算增益保证与文件头一致
+            String physicalMinText = formatField(Math.floor(physicalMin));
+            String physicalMaxText = formatField(Math.ceil(physicalMax));
+            double pMin = Double.parseDouble(physicalMinText);
+            double pMax = Double.parseDouble(physicalMaxText);
+            double gain = (digitalMax - digitalMin) / (pMax - pMin);
+            double offset = digitalMin - pMin * gain;
+
+            int samplesPerRecord = header.sampleRate;
+            long records = (header.sampleCount + samplesPerRecord - 1) / samplesPerRecord;
+
+            FileChannel edfChannel = edf.getChannel();
+            edfChannel.truncate(0);
+            writeFully(edfChannel, edfHeader(header, records, samplesPerRecord, unit, physicalMinText, physicalMaxText));
+
+            RandomAccessFile dat = null;
+            FileChannel datChannel = null;
+            if (wfdbRecord != null) {
+                dat = new RandomAccessFile(wfdbRecord + ".dat", "rw");
+                datChannel = dat.getChannel();
+                datChannel.truncate(0);
+            }
+
+            try {
+                // 第二遍: 转换写出
+                int checksum = 0;
+                int firstValue = 0;
+                long written = 0;
+                long total = records * samplesPerRecord;
+                position = YcProductPluginECGRecorder.headerSize;
+                remaining = header.sampleCount;
+                float lastProgress = -1;
+
+                while (written < total) {
+
+                    outBuffer.clear();
+                    int count = 0;
+                    if (remaining > 0) {
+                        FloatBuffer floats = readBlock(inChannel, inBuffer, position, (int) Math.min(blockSamples, remaining));
+                        count = floats.remaining();
+                        for (int i = 0; i < count; i++) {
+                            long digital = Math.round(floats.get(i) * header.scale * unitScale * gain + offset);
+                            short value = (short) Math.max(digitalMin, Math.min(digitalMax, digital));
+                            outBuffer.putShort(value);
+                            if (written == 0 && i == 0) {
+                                firstValue = value;
+                            }
+                            checksum += value;
+                        }
+                        position += (long) count * YcProductPluginECGRecorder.bytesPerSample;
+                        remaining -= count;
+                    }
+
+                    if (count == 0) {
+                        // 最后一个数据记录补齐
+                        remaining = 0;
+                        int padding = (int) Math.min(blockSamples, total - written);
+                        short zero = (short) Math.max(digitalMin, Math.min(digitalMax, Math.round(offset)));
+                        for (int i = 0; i < padding; i++) {
+                            outBuffer.putShort(zero);
+                        }
+                        count = padding;
+                    }
+
+                    outBuffer.flip();
+                    if (datChannel != null) {
+                        // WFDB只写真实采样, 不写补齐部分
+                        long real = Math.max(0, Math.min(count, header.sampleCount - written));
+                        ByteBuffer datSlice = outBuffer.duplicate();
+                        datSlice.limit((int) (real * 2));
+                        writeFully(datChannel, datSlice);
+                    }
+                    writeFully(edfChannel, outBuffer);
+                    written += count;
+
+                    float progress = total > 0 ? (float) written / total : 1;
+                    if (listener != null && progress - lastProgress >= 0.01f) {
+                        lastProgress = progress;
+                        listener.onProgress(progress);
+                    }
+                }
+
+                edfChannel.force(false);
+
+                if (datChannel != null) {
+                    datChannel.force(false);
+                    writeWfdbHeader(wfdbRecord, header, unit, gain, offset, firstValue, checksum);
+                }
+
+            } finally {
+                if (dat != null) {
+                    dat.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取一块float采样
+     */
+    private static FloatBuffer readBlock(FileChannel channel, ByteBuffer buffer, long position, int samples) throws IOException {
+        buffer.clear();
+        buffer.limit(samples * YcProductPluginECGRecorder.bytesPerSample);
+        while (buffer.hasRemaining()) {
+            int len = channel.read(buffer, position + buffer.position());
+            if (len < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        buffer.limit(buffer.limit() - buffer.limit() % YcProductPluginECGRecorder.bytesPerSample);
+        return buffer.asFloatBuffer();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * EDF文件头 (单通道)
+     */
+    private static ByteBuffer edfHeader(
+            YcProductPluginECGRecorder.Header header,
+            long records,
+            int samplesPerRecord,
+            String unit,
+            String physicalMin,
+            String physicalMax) {
+
+        Date start = new Date(header.startTime);
+        String date = new SimpleDateFormat("dd.MM.yy", Locale.US).format(start);
+        String time = new SimpleDateFormat("HH.mm.ss", Locale.US).format(start);
+        String recordDate = new SimpleDateFormat("dd-MMM-yyyy", Locale.US).format(start).toUpperCase(Locale.US);
+
+        int headerBytes = 256 + 256;
+
+        StringBuilder builder = new StringBuilder(headerBytes);
+        field(builder, "0", 8);
+        field(builder, "X X X X", 80);
+        field(builder, "Startdate " + recordDate + " X X yc_product_plugin", 80);
+        field(builder, date, 8);
+        field(builder, time, 8);
+        field(builder, String.valueOf(headerBytes), 8);
+        field(builder, "", 44);
+        field(builder, String.valueOf(records), 8);
+        field(builder, "1", 8);
+        field(builder, "1", 4);
+
+        field(builder, "ECG", 16);
+        field(builder, "", 80);
+        field(builder, unit, 8);
+        field(builder, physicalMin, 8);
+        field(builder, physicalMax, 8);
+        field(builder, String.valueOf(digitalMin), 8);
+        field(builder, String.valueOf(digitalMax), 8);
+        field(builder, "", 80);
+        field(builder, String.valueOf(samplesPerRecord), 8);
+        field(builder, "", 32);
+
+        return ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void field(StringBuilder builder, String value, int length) {
+        if (value.length() > length) {
+            value = value.substring(0, length);
+        }
+        builder.append(value);
+        for (int i = value.length(); i < length; i++) {
+            builder.append(' ');
+        }
+    }
+
+    /**
+     * 8字符以内的数字
+     */
+    private static String formatField(double value) {
+        String text = String.valueOf((long) value);
+        if (text.length() > 8) {
+            text = value < 0 ? "-9999999" : "99999999";
+        }
+        return text;
+    }
+
+    /**
+     * WFDB头文件 (format 16)
+     */
+    private static void writeWfdbHeader(
+            String wfdbRecord,
+            YcProductPluginECGRecorder.Header header,
+            String unit,
+            double gain,
+            double offset,
+            int firstValue,
+            int checksum) throws IOException {
+
+        File recordFile = new File(wfdbRecord);
+        String name = recordFile.getName();
+        Date start = new Date(header.startTime);
+        String time = new SimpleDateFormat("HH:mm:ss dd/MM/yyyy", Locale.US).format(start);
+
+        String text = String.format(Locale.US, "%s 1 %d %d %s\n", name, header.sampleRate, header.sampleCount, time) +
+                String.format(Locale.US, "%s.dat 16 %.6f(%d)/%s 16 0 %d %d 0 ECG\n",
+                        name, gain, Math.round(offset), unit, firstValue, (short) checksum);
+
+        try (RandomAccessFile hea = new RandomAccessFile(wfdbRecord + ".hea", "rw")) {
+            FileChannel channel = hea.getChannel();
+            channel.truncate(0);
+            writeFully(channel, ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+}
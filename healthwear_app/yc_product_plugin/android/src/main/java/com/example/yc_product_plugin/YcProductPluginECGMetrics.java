@@ -0,0 +1,207 @@
+package com.example.yc_product_plugin;
+
+import com.yucheng.ycbtsdk.Constants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * ECG测量链路统计 (每次测量重置)
+ * <p>
+ * 记录数据包和采样数, 数据包到达间隔分布, 原生处理耗时, 主线程排队延迟,
+ * 以及发送和丢弃的事件数, 用于定位绘图卡顿发生在蓝牙, 原生, 通道还是Dart.
+ */
+public class YcProductPluginECGMetrics {
+
+    // 到达间隔分布的桶上界 (ms), 最后一个桶为超出部分
+    static final int[] intervalBucketsMs = {10, 20, 40, 80, 160, 320, 640};
+
+    /**
+     * 单路数据统计
+     */
+    static class StreamMetrics {
+        long packets;
+        long samples;
+        long lastArrivalNs = -1;
+        long intervalCount;
+        double intervalSumMs;
+        double intervalSquareSumMs;
+        double maxIntervalMs;
+        final long[] intervalHistogram = new long[intervalBucketsMs.length + 1];
+
+        void onPacket(int sampleCount, long arrivalNs) {
+            packets++;
+            samples += sampleCount;
+
+            if (lastArrivalNs >= 0) {
+                double intervalMs = (arrivalNs - lastArrivalNs) / 1e6;
+                intervalCount++;
+                intervalSumMs += intervalMs;
+                intervalSquareSumMs += intervalMs * intervalMs;
+                maxIntervalMs = Math.max(maxIntervalMs, intervalMs);
+
+                int bucket = 0;
+                while (bucket < intervalBucketsMs.length && intervalMs > intervalBucketsMs[bucket]) {
+                    bucket++;
+                }
+                intervalHistogram[bucket]++;
+            }
+            lastArrivalNs = arrivalNs;
+        }
+
+        HashMap toMap() {
+            HashMap map = new HashMap();
+            map.put("packets", packets);
+            map.put("samples", samples);
+
+            double mean = intervalCount > 0 ? intervalSumMs / intervalCount : 0;
+            double variance = intervalCount > 0 ? intervalSquareSumMs / intervalCount - mean * mean : 0;
+            map.put("intervalMeanMs", mean);
+            // 抖动: 到达间隔的标准差
+            map.put("intervalJitterMs", Math.sqrt(Math.max(0, variance)));
+            map.put("intervalMaxMs", maxIntervalMs);
+
+            ArrayList histogram = new ArrayList();
+            for (long count : intervalHistogram) {
+                histogram.add(count);
+            }
+            map.put("intervalHistogram", histogram);
+            return map;
+        }
+    }
+
+    /**
+     * 耗时统计
+     */
+    static class Timing {
+        long count;
+        double sumMs;
+        double maxMs;
+
+        void add(long ns) {
+            double ms = ns / 1e6;
+            count++;
+            sumMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        HashMap toMap() {
+            HashMap map = new HashMap();
+            map.put("count", count);
+            map.put("meanMs", count > 0 ? sumMs / count : 0);
+            map.put("maxMs", maxMs);
+            return map;
+        }
+    }
+
+    private static long sessionStartNs;
+    private static StreamMetrics ecg = new StreamMetrics();
+    private static StreamMetrics ppg = new StreamMetrics();
+    private static long otherPackets;
+    private static Timing processing = new Timing();
+    private static Timing postDelay = new Timing();
+    private static long eventsEmitted;
+    private static long eventsDropped;
+    private static boolean isActive;
+
+    /**
+     * 新的测量开始
+     */
+    static synchronized void reset(long nowNs) {
+        isActive = true;
+        sessionStartNs = nowNs;
+        ecg = new StreamMetrics();
+        ppg = new StreamMetrics();
+        otherPackets = 0;
+        processing = new Timing();
+        postDelay = new Timing();
+        eventsEmitted = 0;
+        eventsDropped = 0;
+    }
+
+    /**
+     * 一个数据包处理完成
+     *
+     * @param isEcg        ECG数据包
+     * @param isPpg        PPG数据包
+     * @param sampleCount  采样数
+     * @param arrivalNs    到达时间
+     * @param processingNs 原生处理耗时
+     */
+    static synchronized void onPacket(boolean isEcg, boolean isPpg, int sampleCount, long arrivalNs, long processingNs) {
+        if (isEcg) {
+            ecg.onPacket(sampleCount, arrivalNs);
+        } else if (isPpg) {
+            ppg.onPacket(sampleCount, arrivalNs);
+        } else {
+            otherPackets++;
+        }
+        processing.add(processingNs);
+    }
+
+    /**
+     * 测量结束, 之后不再计入丢弃数
+     */
+    static synchronized void stop() {
+        isActive = false;
+    }
+
+    /**
+     * 测量过程中ECG/PPG相关的实时数据被限流, 其他类型 (计步, 心率等) 不计入
+     *
+     * @param dataType 实时数据类型
+     */
+    static synchronized void onEventDropped(int dataType) {
+        if (isActive && isSessionDataType(dataType)) {
+            eventsDropped++;
+        }
+    }
+
+    /**
+     * 属于ECG测量链路的实时数据类型
+     */
+    static boolean isSessionDataType(int dataType) {
+        return dataType == Constants.DATATYPE.Real_UploadECG ||
+                dataType == Constants.DATATYPE.Real_UploadPPG ||
+                dataType == Constants.DATATYPE.Real_UploadECGRR ||
+                dataType == Constants.DATATYPE.Real_UploadECGHrv ||
+                dataType == Constants.DATATYPE.Real_UploadMulPhotoelectricWaveform;
+    }
+
+    /**
+     * 事件在主线程执行
+     *
+     * @param delayNs 从post到执行的排队时间
+     * @param isSent  是否发送给Flutter, 否则计为丢弃
+     */
+    static synchronized void onEventDelivered(long delayNs, boolean isSent) {
+        postDelay.add(delayNs);
+        if (isSent) {
+            eventsEmitted++;
+        } else {
+            eventsDropped++;
+        }
+    }
+
+    /**
+     * 当前统计
+     */
+    static synchronized HashMap snapshot(long nowNs) {
+        HashMap map = new HashMap();
+        map.put("durationMs", sessionStartNs > 0 ? (nowNs - sessionStartNs) / 1000000 : 0);
+        map.put("ecg", ecg.toMap());
+        map.put("ppg", ppg.toMap());
+        map.put("otherPackets", otherPackets);
+        map.put("processing", processing.toMap());
+        map.put("postDelay", postDelay.toMap());
+        map.put("eventsEmitted", eventsEmitted);
+        map.put("eventsDropped", eventsDropped);
+
+        ArrayList buckets = new ArrayList();
+        for (int bucket : intervalBucketsMs) {
+            buckets.add(bucket);
+        }
+        map.put("intervalBucketsMs", buckets);
+        return map;
+    }
+}
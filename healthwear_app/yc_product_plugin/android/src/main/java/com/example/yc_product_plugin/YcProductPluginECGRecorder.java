@@ -0,0 +1,291 @@
+package com.example.yc_product_plugin;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * ECG测量记录
+ * <p>
+ * 每次测量的全分辨率滤波数据写入一个二进制文件, 供离线分析和导出使用.
+ * 文件格式 (小端): 32字节文件头 + float32 采样点
+ * <pre>
+ * 0  int   magic 'YCEC'
+ * 4  short version
+ * 6  short headerSize
+ * 8  int   sampleRate
+ * 12 float scale (采样值乘以scale为物理值)
+ * 16 long  startTime (ms)
+ * 24 long  reserved
+ * </pre>
+ */
+public class YcProductPluginECGRecorder {
+
+    static final int magic = 0x43454359; // "YCEC"
+    static final int version = 1;
+    static final int headerSize = 32;
+    static final int bytesPerSample = 4;
+
+    static final String sessionDirName = "ecg_sessions";
+    static final String sessionFileSuffix = ".ecg";
+
+    // 会话ID为开始时间戳
+    private static final Pattern sessionIdPattern = Pattern.compile("\\d{1,19}");
+
+    private static FileChannel channel;
+    private static ByteBuffer buffer;
+    private static File sessionFile;
+
+    /**
+     * ECG会话文件头
+     */
+    static class Header {
+        int sampleRate;
+        float scale;
+        long startTime;
+        long sampleCount;
+    }
+
+    /**
+     * 会话目录
+     */
+    static File sessionDir(Context context) {
+        File dir = new File(context.getFilesDir(), sessionDirName);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    /**
+     * 是否为合法的会话ID, 防止拼出会话目录以外的路径
+     */
+    static boolean isValidSessionId(String sessionId) {
+        return sessionId != null && sessionIdPattern.matcher(sessionId).matches();
+    }
+
+    /**
+     * 会话文件, 会话ID不合法时返回null
+     *
+     * @param sessionId 会话ID (开始时间戳)
+     */
+    static File sessionFile(Context context, String sessionId) {
+        if (!isValidSessionId(sessionId)) {
+            return null;
+        }
+        return new File(sessionDir(context), sessionId + sessionFileSuffix);
+    }
+
+    /**
+     * 开始记录
+     *
+     * @param context
+     * @param sampleRate 采样率
+     */
+    public static synchronized void start(Context context, int sampleRate) {
+
+        stop();
+
+        if (context == null) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        File file = sessionFile(context, String.valueOf(startTime));
+
+        try {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.truncate(0);
+
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(magic);
+            header.putShort((short) version);
+            header.putShort((short) headerSize);
+            header.putInt(sampleRate);
+            header.putFloat(1.0f);
+            header.putLong(startTime);
+            header.putLong(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(8 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.clear();
+            sessionFile = file;
+
+        } catch (IOException e) {
+            Log.e("ECGRecorder", "start: " + e.getMessage());
+            closeQuietly();
+            file.delete();
+        }
+    }
+
+    /**
+     * 追加一包采样
+     */
+    public static synchronized void append(List samples) {
+
+        if (channel == null || samples == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < samples.size(); i++) {
+                Object item = samples.get(i);
+                if (!(item instanceof Number)) {
+                    continue;
+                }
+                if (buffer.remaining() < bytesPerSample) {
+                    flush();
+                }
+                buffer.putFloat(((Number) item).floatValue());
+            }
+        } catch (IOException e) {
+            Log.e("ECGRecorder", "append: " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    /**
+     * 结束记录
+     */
+    public static synchronized void stop() {
+
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            flush();
+            channel.force(false);
+        } catch (IOException e) {
+            Log.e("ECGRecorder", "stop: " + e.getMessage());
+        }
+        closeQuietly();
+    }
+
+    private static void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void closeQuietly() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+        }
+        channel = null;
+        sessionFile = null;
+    }
+
+    /**
+     * 读取文件头, 采样点数由文件长度计算 (异常退出的会话也可读)
+     */
+    static Header readHeader(FileChannel fileChannel) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (fileChannel.read(header, header.position()) < 0) {
+                throw new IOException("ECG session header truncated");
+            }
+        }
+        header.flip();
+
+        if (header.getInt() != magic) {
+            throw new IOException("Not an ECG session file");
+        }
+        header.getShort();
+        int size = header.getShort();
+
+        Header info = new Header();
+        info.sampleRate = header.getInt();
+        info.scale = header.getFloat();
+        info.startTime = header.getLong();
+        info.sampleCount = (fileChannel.size() - size) / bytesPerSample;
+        return info;
+    }
+
+    /**
+     * 读取一段采样
+     *
+     * @param fileChannel 会话文件
+     * @param start       起始采样
+     * @param samples     输出
+     * @param count       采样数
+     */
+    static void readSamples(FileChannel fileChannel, long start, float[] samples, int count) throws IOException {
+
+        ByteBuffer bytes = ByteBuffer.allocate(count * bytesPerSample).order(ByteOrder.LITTLE_ENDIAN);
+        long position = headerSize + start * bytesPerSample;
+        while (bytes.hasRemaining()) {
+            int len = fileChannel.read(bytes, position + bytes.position());
+            if (len < 0) {
+                break;
+            }
+        }
+        bytes.flip();
+        bytes.asFloatBuffer().get(samples, 0, bytes.remaining() / bytesPerSample);
+    }
+
+    /**
+     * 已保存的会话列表
+     */
+    static synchronized ArrayList<HashMap> listSessions(Context context) {
+
+        ArrayList<HashMap> sessions = new ArrayList<>();
+        File[] files = sessionDir(context).listFiles();
+        if (files == null) {
+            return sessions;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(sessionFileSuffix) || file.equals(sessionFile)) {
+                continue;
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                Header header = readHeader(raf.getChannel());
+
+                HashMap info = new HashMap();
+                info.put("sessionId", name.substring(0, name.length() - sessionFileSuffix.length()));
+                info.put("startTime", header.startTime);
+                info.put("sampleRate", header.sampleRate);
+                info.put("sampleCount", header.sampleCount);
+                info.put("fileSize", file.length());
+                sessions.add(info);
+            } catch (IOException e) {
+                Log.e("ECGRecorder", "listSessions: " + name + " " + e.getMessage());
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * 删除会话
+     */
+    static synchronized boolean deleteSession(Context context, String sessionId) {
+        File file = sessionFile(context, sessionId);
+        return file != null && !file.equals(sessionFile) && file.delete();
+    }
+}
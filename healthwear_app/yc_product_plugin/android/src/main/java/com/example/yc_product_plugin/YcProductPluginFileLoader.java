@@ -0,0 +1,77 @@
+package com.example.yc_product_plugin;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 表盘和固件文件读取
+ * <p>
+ * 需要 byte[] 的SDK接口一次读入一个大小正好的数组, 其他场景直接内存映射,
+ * 文件句柄都在返回前关闭.
+ */
+public class YcProductPluginFileLoader {
+
+    // byte[] 最大长度
+    private static final long maxArraySize = Integer.MAX_VALUE - 8;
+
+    /**
+     * 只读内存映射, 映射在通道关闭后仍然有效
+     *
+     * @param path 文件路径
+     */
+    public static MappedByteBuffer map(String path) throws IOException {
+
+        File file = checkFile(path);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 读取整个文件到一个大小正好的数组
+     *
+     * @param path 文件路径
+     */
+    public static byte[] readFully(String path) throws IOException {
+
+        File file = checkFile(path);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            long size = channel.size();
+            if (size > maxArraySize) {
+                throw new IOException("File too large: " + path);
+            }
+
+            byte[] bytes = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file: " + path);
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 检查文件可读
+     */
+    public static File checkFile(String path) throws FileNotFoundException {
+
+        if (path == null) {
+            throw new FileNotFoundException("File path is null");
+        }
+        File file = new File(path);
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException(path);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.yc_product_plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 本地固件包缓存 (按设备型号)
+ * <p>
+ * 每个设备型号保留最后一次升级成功的固件, 保存在 filesDir/firmware_store/ 下.
+ * 新版本可以用差分补丁在本地由缓存的旧版本生成, 再次升级时也可以直接使用缓存文件.
+ */
+public class YcProductPluginFirmwareStore {
+
+    private static final String preferencesName = "yc_firmware_store";
+    static final String storeDirName = "firmware_store";
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(preferencesName, Context.MODE_PRIVATE);
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static File deviceDir(Context context, String deviceType) {
+        return new File(new File(context.getFilesDir(), storeDirName), safeName(deviceType));
+    }
+
+    /**
+     * 缓存文件的扩展名: zip 包 (PK\3\4) 为 .zip, 否则沿用原文件的扩展名.
+     * SDK按扩展名区分升级文件, Nordic 只接受 .zip
+     *
+     * @param file     文件内容
+     * @param original 原文件名
+     */
+    static String extension(File file, String original) throws IOException {
+
+        byte[] magic = new byte[4];
+        int count = 0;
+        try (FileInputStream input = new FileInputStream(file)) {
+            while (count < magic.length) {
+                int read = input.read(magic, count, magic.length - count);
+                if (read < 0) {
+                    break;
+                }
+                count += read;
+            }
+        }
+        if (count == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return ".zip";
+        }
+
+        int dot = original.lastIndexOf('.');
+        String extension = dot < 0 || dot < original.lastIndexOf(File.separatorChar) ? "" : original.substring(dot);
+        return extension.isEmpty() ? ".bin" : safeName(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 缓存的固件信息, 没有缓存或文件已丢失时返回null
+     *
+     * @param deviceType 设备型号
+     */
+    static synchronized HashMap get(Context context, String deviceType) {
+
+        if (context == null || deviceType == null) {
+            return null;
+        }
+
+        try {
+            String json = preferences(context).getString(deviceType, null);
+            if (json == null) {
+                return null;
+            }
+            JSONObject item = new JSONObject(json);
+            File file = new File(item.getString("filePath"));
+            if (!file.isFile() || file.length() != item.getLong("size")) {
+                return null;
+            }
+
+            HashMap info = new HashMap();
+            info.put("version", item.getString("version"));
+            info.put("filePath", file.getAbsolutePath());
+            info.put("sha256", item.getString("sha256"));
+            info.put("size", item.getLong("size"));
+            info.put("installTime", item.optLong("installTime"));
+            return info;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 记录升级成功的固件, 复制到缓存目录并删除这个型号的其他文件
+     *
+     * @param deviceType 设备型号
+     * @param version    固件版本
+     * @param filePath   固件文件
+     */
+    static synchronized void put(Context context, String deviceType, String version, String filePath) {
+
+        if (context == null || deviceType == null || version == null) {
+            return;
+        }
+
+        try {
+            File directory = deviceDir(context, deviceType);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+
+            File source = YcProductPluginFileLoader.checkFile(filePath);
+            File target = new File(directory, safeName(version) + extension(source, source.getName()));
+            if (!source.getCanonicalPath().equals(target.getCanonicalPath())) {
+                copy(source, target);
+            }
+
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.getName().equals(target.getName())) {
+                        file.delete();
+                    }
+                }
+            }
+
+            JSONObject item = new JSONObject();
+            item.put("version", version);
+            item.put("filePath", target.getAbsolutePath());
+            item.put("sha256", YcProductPluginWatchFaceCache.hashFile(target.getAbsolutePath()));
+            item.put("size", target.length());
+            item.put("installTime", System.currentTimeMillis());
+            preferences(context).edit().putString(deviceType, item.toString()).apply();
+
+        } catch (Exception e) {
+            Log.e("FirmwareStore", "put: " + e.getMessage());
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileInputStream input = new FileInputStream(source);
+             FileOutputStream output = new FileOutputStream(temp)) {
+            FileChannel inputChannel = input.getChannel();
+            FileChannel outputChannel = output.getChannel();
+            long position = 0;
+            long size = inputChannel.size();
+            while (position < size) {
+                position += inputChannel.transferTo(position, size - position, outputChannel);
+            }
+            output.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp);
+        }
+    }
+
+    /**
+     * 查询缓存的固件
+     *
+     * @param arguments [deviceType]
+     */
+    public static void queryFirmwareStore(Context context, Object arguments, @NonNull MethodChannel.Result result) {
+
+        HashMap info = null;
+        try {
+            ArrayList list = (ArrayList) arguments;
+            info = get(context, (String) list.get(0));
+        } catch (Exception e) {
+            Log.e("FirmwareStore", "query: " + e.getMessage());
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", info == null ?
+                YcProductPluginFlutterType.PluginState.failed :
+                YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", info == null ? "" : info);
+        result.success(map);
+    }
+
+    /**
+     * 用缓存的旧版本和差分补丁生成新固件, 返回新固件路径, 之后交给 deviceUpgrade
+     *
+     * @param arguments [deviceType, baseVersion, patchPath, newVersion, sha256 (可为空)]
+     */
+    public static void applyFirmwarePatch(Context context, Handler handler, Object arguments, @NonNull MethodChannel.Result result) {
+
+        ArrayList list = (ArrayList) arguments;
+        if (list == null || list.size() < 4) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "");
+            result.success(map);
+            return;
+        }
+
+        String deviceType = (String) list.get(0);
+        String baseVersion = (String) list.get(1);
+        String patchPath = (String) list.get(2);
+        String newVersion = (String) list.get(3);
+        String expectedHash = list.size() > 4 && list.get(4) != null ? (String) list.get(4) : "";
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                HashMap map = new HashMap();
+                File temp = null;
+                try {
+                    HashMap base = get(context, deviceType);
+                    if (base == null || !baseVersion.equals(base.get("version"))) {
+                        throw new IOException("Base firmware " + baseVersion + " not cached");
+                    }
+
+                    String basePath = (String) base.get("filePath");
+                    temp = new File(deviceDir(context, deviceType), safeName(newVersion) + ".tmp");
+
+                    String hash = YcProductPluginBsPatch.apply(basePath, patchPath, temp.getAbsolutePath());
+                    if (!expectedHash.isEmpty() && !expectedHash.equalsIgnoreCase(hash)) {
+                        throw new IOException("Patched firmware hash mismatch");
+                    }
+
+                    File target = new File(deviceDir(context, deviceType),
+                            safeName(newVersion) + extension(temp, basePath));
+                    if (!temp.renameTo(target)) {
+                        throw new IOException("Cannot rename " + temp);
+                    }
+
+                    HashMap info = new HashMap();
+                    info.put("version", newVersion);
+                    info.put("filePath", target.getAbsolutePath());
+                    info.put("sha256", hash);
+                    info.put("size", target.length());
+
+                    map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                    map.put("data", info);
+                } catch (Exception e) {
+                    Log.e("FirmwareStore", "applyPatch: " + e.getMessage());
+                    if (temp != null) {
+                        temp.delete();
+                    }
+                    map.put("code", YcProductPluginFlutterType.PluginState.failed);
+                    map.put("data", e.getMessage() == null ? "" : e.getMessage());
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(map);
+                    }
+                });
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.yc_product_plugin;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 固件升级前的文件校验
+ * <p>
+ * 内存映射后一次遍历同时计算 CRC32 和 SHA-256; zip 包 (Nordic/杰理) 检查中央目录
+ * 和每个条目的本地文件头是否完整, 再流式解压检查条目和 manifest; 文件大小按 mcu 平台检查上限.
+ * mcu 平台和文件内容不一致 (如未知平台按 nrf52832 传入的 .bin) 时不做平台相关的检查.
+ * 损坏或截断的文件在连接设备之前就返回错误.
+ */
+public class YcProductPluginFirmwareVerifier {
+
+    // 每次计算的块大小
+    static final int chunkSize = 64 * 1024;
+
+    // 固件文件大小上限, 下标为 mcu 平台 (nrf52832, rtk8762c, rtk8762d, jl701n, jl632n)
+    static final long[] maxFirmwareSizes = {
+            1024 * 1024,
+            8 * 1024 * 1024,
+            8 * 1024 * 1024,
+            32 * 1024 * 1024,
+            32 * 1024 * 1024,
+    };
+
+    static final int mcuNrf52832 = 0;
+
+    private static final int localHeaderSignature = 0x04034b50;
+    private static final int centralHeaderSignature = 0x02014b50;
+    private static final int endOfCentralDirectorySignature = 0x06054b50;
+
+    // 中央目录结束记录 22字节 + 注释最长 65535字节
+    private static final int endOfCentralDirectorySize = 22;
+    private static final int maxCommentSize = 0xFFFF;
+
+    /**
+     * 校验固件文件
+     *
+     * @param arguments [mcu, filePath]
+     */
+    public static void verifyFirmware(Object arguments, @NonNull MethodChannel.Result result) {
+
+        HashMap map = new HashMap();
+        try {
+            ArrayList list = (ArrayList) arguments;
+            int mcu = (int) list.get(0);
+            String filePath = (String) list.get(1);
+
+            map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+            map.put("data", verify(mcu, filePath));
+        } catch (Exception e) {
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", e.getMessage() == null ? "" : e.getMessage());
+        }
+        result.success(map);
+    }
+
+    /**
+     * 校验固件文件, 不合法时抛出异常
+     *
+     * @param mcu      mcu 平台
+     * @param filePath 固件路径
+     * @return size, crc32, sha256, isZip, entries, files
+     */
+    static HashMap verify(int mcu, String filePath) throws IOException {
+
+        MappedByteBuffer buffer = YcProductPluginFileLoader.map(filePath);
+        long size = buffer.capacity();
+
+        if (size == 0) {
+            throw new IOException("Firmware file is empty");
+        }
+
+        boolean isZip = size >= 4 && buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(0) == localHeaderSignature;
+        int entries = 0;
+        ArrayList<String> names = new ArrayList<>();
+        if (isZip) {
+            entries = checkZip(buffer, names);
+        }
+
+        int platform = detectPlatform(mcu, isZip, names);
+        if (platform >= 0 && platform < maxFirmwareSizes.length && size > maxFirmwareSizes[platform]) {
+            throw new IOException("Firmware file too large for mcu " + platform + ": " + size);
+        }
+
+        ArrayList<HashMap> files = new ArrayList<>();
+        if (isZip) {
+            // 解压校验每个条目的 CRC 和 manifest, 不写出文件
+            files = YcProductPluginDfuPackage.validate(platform, filePath);
+        }
+
+        CRC32 crc32 = new CRC32();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        ByteBuffer data = buffer.duplicate();
+        data.clear();
+        while (data.hasRemaining()) {
+            int end = Math.min(data.limit(), data.position() + chunkSize);
+            ByteBuffer chunk = data.duplicate();
+            chunk.limit(end);
+            crc32.update(chunk.duplicate());
+            digest.update(chunk);
+            data.position(end);
+        }
+
+        HashMap info = new HashMap();
+        info.put("size", size);
+        info.put("crc32", crc32.getValue());
+        info.put("sha256", YcProductPluginWatchFaceCache.toHex(digest.digest()));
+        info.put("isZip", isZip);
+        info.put("mcu", platform);
+        info.put("entries", entries);
+        info.put("files", files);
+        return info;
+    }
+
+    /**
+     * 按文件内容确认 mcu 平台, 无法确认时返回 -1 (不做平台相关的检查)
+     * <p>
+     * Flutter 在 mcu 未知时传 0 (nrf52832), 所以 0 只有在文件是带 manifest.json 的
+     * zip 包 (Nordic DFU 包) 时才按 Nordic 处理.
+     */
+    static int detectPlatform(int mcu, boolean isZip, ArrayList<String> names) {
+        if (mcu != mcuNrf52832) {
+            return mcu >= 0 && mcu < maxFirmwareSizes.length ? mcu : -1;
+        }
+        return isZip && names.contains("manifest.json") ? mcuNrf52832 : -1;
+    }
+
+    /**
+     * 检查 zip 中央目录, 返回条目数
+     *
+     * @param names 保存条目名称
+     */
+    static int checkZip(ByteBuffer source, ArrayList<String> names) throws IOException {
+
+        ByteBuffer zip = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int size = zip.capacity();
+
+        // 从文件末尾向前查找中央目录结束记录
+        int end = -1;
+        int lowest = Math.max(0, size - endOfCentralDirectorySize - maxCommentSize);
+        for (int i = size - endOfCentralDirectorySize; i >= lowest; i--) {
+            if (zip.getInt(i) == endOfCentralDirectorySignature) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Zip end of central directory not found");
+        }
+
+        int count = zip.getShort(end + 10) & 0xFFFF;
+        long directorySize = zip.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = zip.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (count == 0) {
+            throw new IOException("Zip has no entries");
+        }
+        if (directoryOffset + directorySize > end) {
+            throw new IOException("Zip central directory truncated");
+        }
+
+        int position = (int) directoryOffset;
+        for (int i = 0; i < count; i++) {
+
+            if (position + 46 > end || zip.getInt(position) != centralHeaderSignature) {
+                throw new IOException("Zip central directory entry " + i + " corrupt");
+            }
+
+            long compressedSize = zip.getInt(position + 20) & 0xFFFFFFFFL;
+            int nameLength = zip.getShort(position + 28) & 0xFFFF;
+            int extraLength = zip.getShort(position + 30) & 0xFFFF;
+            int commentLength = zip.getShort(position + 32) & 0xFFFF;
+            long localOffset = zip.getInt(position + 42) & 0xFFFFFFFFL;
+
+            if (position + 46 + nameLength > end) {
+                throw new IOException("Zip central directory entry " + i + " corrupt");
+            }
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer name = zip.duplicate();
+            name.position(position + 46);
+            name.get(nameBytes);
+            String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+            names.add(entryName);
+
+            // 本地文件头和数据必须在中央目录之前
+            if (localOffset + 30 > directoryOffset || zip.getInt((int) localOffset) != localHeaderSignature) {
+                throw new IOException("Zip local header missing: " + entryName);
+            }
+            int localNameLength = zip.getShort((int) localOffset + 26) & 0xFFFF;
+            int localExtraLength = zip.getShort((int) localOffset + 28) & 0xFFFF;
+            long dataEnd = localOffset + 30 + localNameLength + localExtraLength + compressedSize;
+            if (dataEnd > directoryOffset) {
+                throw new IOException("Zip entry truncated: " + entryName);
+            }
+
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return count;
+    }
+}
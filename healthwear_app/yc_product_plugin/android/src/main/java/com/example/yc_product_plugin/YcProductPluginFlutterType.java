@@ -17,6 +17,8 @@ public class YcProductPluginFlutterType {
         static final int failed = 5;
 
         static final int installingWatchFace = 6;  // 安装表盘
+
+        static final int exportingECG = 7;  // 导出ECG
     }
 
     /// 插件API的状态
@@ -37,6 +39,15 @@ public class YcProductPluginFlutterType {
         // 蓝牙状态变化
         static final String bluetoothStateChange = "bluetoothStateChange";
 
+        // 扫描到的设备
+        static final String deviceScanResult = "deviceScanResult";
+
+        // 多设备会话状态变化
+        static final String deviceSessionEvent = "deviceSessionEvent";
+
+        // 连接状态机状态变化
+        static final String deviceConnectionStateChange = "deviceConnectionStateChange";
+
         // 设备拍照状态变化
         static final String deviceControlPhotoStateChange = "deviceControlPhotoStateChange";
 
@@ -111,6 +122,18 @@ public class YcProductPluginFlutterType {
         static final String deviceRealACCData = "deviceRealACCData";
 
         static final String deviceMultiChannelPPGData = "deviceMultiChannelPPGData";
+
+        /// 抽稀后的PPG绘图数据 (开启显示抽稀时): ECG测量中为PPG列表, 多通道PPG为 {red, green, ir, dataType, sampleType}
+        static final String deviceMultiChannelPPGDisplayData = "deviceMultiChannelPPGDisplayData";
+
+        /// 实时脉搏传导时间 (PTT)
+        static final String deviceRealPulseTransitTime = "deviceRealPulseTransitTime";
+
+        /// ECG链路统计
+        static final String ecgPipelineMetrics = "ecgPipelineMetrics";
+
+        /// ECG离线分析进度
+        static final String ecgAnalysisProgress = "ecgAnalysisProgress";
     }
 
     /// 蓝牙状态
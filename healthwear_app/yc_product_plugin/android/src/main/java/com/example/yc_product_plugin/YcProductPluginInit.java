@@ -28,8 +28,9 @@ public class YcProductPluginInit {
 
         SpeechUtility.createUtility(context, SpeechConstant.APPID + "=eac7ae72");
 
-        // 调用SDK
-        YCBTClient.initClient(context, isReconnectEnable, isLogEnable);
+        // 调用SDK, 回连由 YcProductPluginConnection 处理
+        YCBTClient.initClient(context, false, isLogEnable);
+        YcProductPluginConnection.init(isReconnectEnable);
         result.success(null);
     }
 
@@ -46,8 +47,7 @@ public class YcProductPluginInit {
     // 设置回连
     public static void setReconnectEnabled(Object arguments, @NonNull MethodChannel.Result result) {
         Boolean isReconnectEnable = (Boolean)arguments;
-        // 暂时没有实现
-        Reconnect.getInstance().setReconnect(isReconnectEnable);
+        YcProductPluginConnection.setReconnectEnabled(isReconnectEnable);
         result.success(null);
     }
 
@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import com.yucheng.ycbtsdk.YCBTClient;
 import com.yucheng.ycbtsdk.upgrade.DfuCallBack;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -37,6 +38,10 @@ public class YcProductPluginOTA {
         int mcu = (int) list.get(0);
         String filePath = (String) list.get(1);
 
+        // 可选: 设备型号和固件版本, 升级成功后缓存这个固件
+        String deviceType = list.size() > 3 ? (String) list.get(2) : null;
+        String firmwareVersion = list.size() > 3 ? (String) list.get(3) : null;
+
         String macAddress = YCBTClient.getBindDeviceMac();
         String deviceName = YCBTClient.getBindDeviceName();
 
@@ -45,18 +50,25 @@ public class YcProductPluginOTA {
         HashMap info = new HashMap();
         info.clear();
 
+        YcProductPluginProgressReporter reporter = new YcProductPluginProgressReporter(
+                methodChannel, handler, "upgradeState",
+                YcProductPluginFlutterType.DeviceUpdateState.upgradingFirmware,
+                new File(filePath).length());
+
+        YcProductPluginOTATelemetry telemetry = YcProductPluginOTATelemetry.begin(mcu, new File(filePath).length());
 
         info.put("code", YcProductPluginFlutterType.DeviceUpdateState.start);
-        info.put("progress", "0.0");
+        info.put("progress", 0.0);
         info.put("error", "");
 
         methodChannel.invokeMethod("upgradeState", info);
         Log.d("startBleStateChange","startBleStateChange111");
-        handler.post(new Runnable() {
+        Runnable upgrade = new Runnable() {
             @Override
             public void run() {
 
                 YCBTClient.setOta(true);
+                YcProductPluginConnection.setOtaInProgress(true);
                 // YCBTClient.registerBleStateChange(null);
 
                 Log.d("registerBleStateChange","onConnectResponse");
@@ -66,24 +78,29 @@ public class YcProductPluginOTA {
                    @Override
                    public void progress(int i) {
 //                        Log.d("")
-Log.d("startBleStateProgress","startBleStateProgress:"+i);
-                       info.clear();
-
-                       info.put("code", YcProductPluginFlutterType.DeviceUpdateState.upgradingFirmware);
-                       info.put("progress", String.format("%.2f", i * 0.01));
-                       info.put("error", "");
-
-                       methodChannel.invokeMethod("upgradeState", info);
+                       telemetry.progress(i);
+                       reporter.report(i * 0.01f);
                    }
 
                    @Override
                    public void success() {
                        Log.d("startBleStateSuccess","startBleStateSuccess:"+"success");
                        YCBTClient.setOta(false);
+                       YcProductPluginConnection.setOtaInProgress(false);
+                       reporter.finish();
+                       telemetry.end("succeed", "");
+                       if (deviceType != null && firmwareVersion != null) {
+                           new Thread(new Runnable() {
+                               @Override
+                               public void run() {
+                                   YcProductPluginFirmwareStore.put(context, deviceType, firmwareVersion, filePath);
+                               }
+                           }).start();
+                       }
                        info.clear();
 
                        info.put("code", YcProductPluginFlutterType.DeviceUpdateState.succeed);
-                       info.put("progress", "1.0");
+                       info.put("progress", 1.0);
                        info.put("error", "");
 
                        methodChannel.invokeMethod("upgradeState", info);
@@ -95,10 +112,13 @@ Log.d("startBleStateProgress","startBleStateProgress:"+i);
                    public void failed(String s) {
                        Log.d("startBleStateFail","startBleStateFail:"+s);
                        YCBTClient.setOta(false);
+                       YcProductPluginConnection.setOtaInProgress(false);
+                       reporter.finish();
+                       telemetry.end("failed", s);
                        info.clear();
 
                        info.put("code", YcProductPluginFlutterType.DeviceUpdateState.failed);
-                       info.put("progress", "0.0");
+                       info.put("progress", 0.0);
                        info.put("error", s);
 
                        handler.post(new Runnable() {
@@ -113,36 +133,43 @@ Log.d("startBleStateProgress","startBleStateProgress:"+i);
                    @Override
                    public void disconnect() {
                        Log.e("MARK", "disconnect: ");
+                       telemetry.event("disconnect", "");
                    }
 
                    @Override
                    public void onNeedReconnect(String s, boolean b) {
-
+                       telemetry.event("needReconnect", s);
                    }
 
                    @Override
                    public void connecting() {
                        Log.e("MARK", "connecting: ");
+                       telemetry.phase(YcProductPluginOTATelemetry.phaseConnect);
                    }
 
                    @Override
                    public void connected() {
                        Log.e("MARK", "connected: ");
+                       telemetry.phase(YcProductPluginOTATelemetry.phaseDfuEntry);
                    }
 
                    @Override
                    public void latest() {
                        Log.e("MARK", "latest: ");
+                       telemetry.end("latest", "");
                    }
 
                    @Override
                    public void error(String s) {
                        Log.d("失败","失败原因:"+s);
                        YCBTClient.setOta(false);
+                       YcProductPluginConnection.setOtaInProgress(false);
+                       reporter.finish();
+                       telemetry.end("failed", s);
                        info.clear();
 
                        info.put("code", YcProductPluginFlutterType.DeviceUpdateState.failed);
-                       info.put("progress", "0.0");
+                       info.put("progress", 0.0);
                        info.put("error", s);
 
                        methodChannel.invokeMethod("upgradeState", info);
@@ -155,6 +182,7 @@ Log.d("startBleStateProgress","startBleStateProgress:"+i);
                        Log.d("registerBleStateChange","code="+code);
                        // if (code == com.yucheng.ycbtsdk.Constants.BLEState.ReadWriteOK){
                             if (code == 0x0a && YCBTClient.isOta()){
+                               telemetry.reconnect();
                                YCBTClient.upgradeFirmware(context, null, null, filePath,dfuCallBack);
                             }
 
@@ -165,11 +193,42 @@ Log.d("startBleStateProgress","startBleStateProgress:"+i);
                Log.d("开始升级","开始升级:"+macAddress+","+"deviceName"+deviceName+",filePath"+filePath);
 
                // 开始升级
+               telemetry.phase(YcProductPluginOTATelemetry.phaseConnect);
                YCBTClient.upgradeFirmware(context, macAddress, deviceName, filePath, dfuCallBack
                );
 
             }
-        });
+        };
+
+        // 先校验固件文件, 通过后再连接设备升级
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                try {
+                    HashMap firmware = YcProductPluginFirmwareVerifier.verify(mcu, filePath);
+                    Log.d("verifyFirmware", "firmware=" + firmware);
+                } catch (Exception e) {
+                    Log.e("verifyFirmware", "failed: " + e.getMessage());
+                    telemetry.end("failed", e.getMessage());
+
+                    HashMap failedInfo = new HashMap();
+                    failedInfo.put("code", YcProductPluginFlutterType.DeviceUpdateState.failed);
+                    failedInfo.put("progress", 0.0);
+                    failedInfo.put("error", e.getMessage() == null ? "invalid firmware" : e.getMessage());
+
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            methodChannel.invokeMethod("upgradeState", failedInfo);
+                        }
+                    });
+                    return;
+                }
+
+                handler.post(upgrade);
+            }
+        }).start();
 
 
     }
@@ -0,0 +1,267 @@
+package com.example.yc_product_plugin;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 固件升级过程记录
+ * <p>
+ * 每次升级记录各阶段 (校验, 连接, 进入DFU, 传输, 设备校验, 重连) 的起止时间,
+ * 按滑动窗口统计的传输速度, 重连次数和最终结果. 升级结束后可以通过
+ * queryUpgradeTelemetry 查询最近一次的记录.
+ */
+public class YcProductPluginOTATelemetry {
+
+    static final String phaseVerify = "verify";
+    static final String phaseConnect = "connect";
+    static final String phaseDfuEntry = "dfuEntry";
+    static final String phaseTransfer = "transfer";
+    static final String phaseValidation = "validation";
+    static final String phaseReconnect = "reconnect";
+
+    // 速度统计的滑动窗口长度和滑动步长 (ms), 相邻窗口互相重叠
+    static final long windowMs = 1000;
+    static final long windowStepMs = 250;
+
+    // 记录条数上限
+    static final int maxWindows = 2400;
+    static final int maxEvents = 200;
+
+    // 最近一次升级
+    private static volatile YcProductPluginOTATelemetry last;
+
+    private final int mcu;
+    private final long totalBytes;
+    private final long startMs;
+
+    private final ArrayList<HashMap> phases = new ArrayList<>();
+    private final ArrayList<HashMap> windows = new ArrayList<>();
+    private final ArrayList<HashMap> events = new ArrayList<>();
+
+    private HashMap currentPhase;
+    private int reconnectCount = 0;
+    private int lastProgress = -1;
+
+    // 窗口内的进度点 {时间, 进度}, 第一个点在窗口开始处或之前
+    private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+    private long lastWindowMs = -1;
+
+    private String outcome = "running";
+    private String error = "";
+    private long endMs = -1;
+
+    private YcProductPluginOTATelemetry(int mcu, long totalBytes) {
+        this.mcu = mcu;
+        this.totalBytes = totalBytes;
+        this.startMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 开始新的升级记录, 从校验阶段开始
+     */
+    static YcProductPluginOTATelemetry begin(int mcu, long totalBytes) {
+        YcProductPluginOTATelemetry telemetry = new YcProductPluginOTATelemetry(mcu, totalBytes);
+        telemetry.phase(phaseVerify);
+        last = telemetry;
+        return telemetry;
+    }
+
+    /**
+     * 查询最近一次升级的记录
+     */
+    public static void queryUpgradeTelemetry(@NonNull MethodChannel.Result result) {
+
+        YcProductPluginOTATelemetry telemetry = last;
+
+        HashMap map = new HashMap();
+        map.put("code", telemetry == null ?
+                YcProductPluginFlutterType.PluginState.failed :
+                YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", telemetry == null ? "" : telemetry.toMap());
+        result.success(map);
+    }
+
+    /**
+     * 进入新阶段, 同时结束当前阶段. 与当前阶段相同时忽略
+     */
+    synchronized void phase(String name) {
+
+        if (endMs >= 0 || (currentPhase != null && name.equals(currentPhase.get("name")))) {
+            return;
+        }
+
+        long now = elapsed();
+        closePhase(now);
+
+        currentPhase = new HashMap();
+        currentPhase.put("name", name);
+        currentPhase.put("startMs", now);
+        phases.add(currentPhase);
+        event(name, "");
+    }
+
+    /**
+     * SDK 进度回调 (0 - 100)
+     */
+    synchronized void progress(int percent) {
+
+        if (endMs >= 0 || percent == lastProgress) {
+            return;
+        }
+
+        if (percent < 100) {
+            phase(phaseTransfer);
+        }
+        lastProgress = percent;
+
+        long now = elapsed();
+        samples.addLast(new long[]{now, percent});
+        while (samples.size() > 1) {
+            // 第二个点也在窗口开始之前时, 第一个点不再需要
+            long[] oldest = samples.removeFirst();
+            if (samples.peekFirst()[0] > now - windowMs) {
+                samples.addFirst(oldest);
+                break;
+            }
+        }
+
+        long spanMs = now - samples.peekFirst()[0];
+        if (spanMs >= windowMs && (lastWindowMs < 0 || now - lastWindowMs >= windowStepMs)) {
+            addWindow(now, percent);
+        }
+
+        if (percent >= 100) {
+            // 最后不足一个窗口的部分
+            if (spanMs > 0 && lastWindowMs != now) {
+                addWindow(now, percent);
+            }
+            phase(phaseValidation);
+        }
+    }
+
+    /**
+     * 设备断开后重新连接 (registerBleStateChange 0x0a)
+     */
+    synchronized void reconnect() {
+        reconnectCount++;
+        // 重连期间不计入传输速度
+        samples.clear();
+        lastWindowMs = -1;
+        phase(phaseReconnect);
+    }
+
+    /**
+     * 记录 SDK 回调等事件
+     */
+    synchronized void event(String name, String detail) {
+        if (events.size() >= maxEvents) {
+            return;
+        }
+        HashMap item = new HashMap();
+        item.put("name", name);
+        item.put("timeMs", elapsed());
+        item.put("detail", detail == null ? "" : detail);
+        events.add(item);
+    }
+
+    /**
+     * 升级结束
+     *
+     * @param outcome succeed, failed, latest
+     * @param error   失败原因
+     */
+    synchronized void end(String outcome, String error) {
+
+        if (endMs >= 0) {
+            return;
+        }
+        event(outcome, error);
+        endMs = elapsed();
+        closePhase(endMs);
+        currentPhase = null;
+        this.outcome = outcome;
+        this.error = error == null ? "" : error;
+    }
+
+    private long elapsed() {
+        return SystemClock.elapsedRealtime() - startMs;
+    }
+
+    private void closePhase(long now) {
+        if (currentPhase != null && !currentPhase.containsKey("durationMs")) {
+            currentPhase.put("durationMs", now - (long) currentPhase.get("startMs"));
+        }
+    }
+
+    /**
+     * 记录截止到 now 的一个滑动窗口
+     */
+    private void addWindow(long now, int percent) {
+
+        lastWindowMs = now;
+        if (windows.size() >= maxWindows) {
+            return;
+        }
+
+        long[] first = samples.peekFirst();
+        long durationMs = now - first[0];
+        long bytes = totalBytes * (percent - first[1]) / 100;
+        HashMap window = new HashMap();
+        window.put("startMs", first[0]);
+        window.put("durationMs", durationMs);
+        window.put("bytes", bytes);
+        window.put("bytesPerSecond", bytes * 1000 / Math.max(1, durationMs));
+        windows.add(window);
+    }
+
+    private synchronized HashMap toMap() {
+
+        long now = endMs >= 0 ? endMs : elapsed();
+
+        ArrayList phaseList = new ArrayList();
+        long transferMs = 0;
+        for (HashMap phase : phases) {
+            HashMap item = new HashMap(phase);
+            if (!item.containsKey("durationMs")) {
+                item.put("durationMs", now - (long) item.get("startMs"));
+            }
+            if (phaseTransfer.equals(item.get("name"))) {
+                transferMs += (long) item.get("durationMs");
+            }
+            phaseList.add(item);
+        }
+
+        long minBytesPerSecond = 0;
+        long maxBytesPerSecond = 0;
+        for (int i = 0; i < windows.size(); i++) {
+            long bytesPerSecond = (long) windows.get(i).get("bytesPerSecond");
+            minBytesPerSecond = i == 0 ? bytesPerSecond : Math.min(minBytesPerSecond, bytesPerSecond);
+            maxBytesPerSecond = Math.max(maxBytesPerSecond, bytesPerSecond);
+        }
+
+        long transferredBytes = totalBytes * Math.max(0, lastProgress) / 100;
+
+        HashMap info = new HashMap();
+        info.put("mcu", mcu);
+        info.put("totalBytes", totalBytes);
+        info.put("outcome", outcome);
+        info.put("error", error);
+        info.put("durationMs", now);
+        info.put("reconnectCount", reconnectCount);
+        info.put("progress", Math.max(0, lastProgress));
+        info.put("averageBytesPerSecond", transferMs > 0 ? transferredBytes * 1000 / transferMs : 0);
+        info.put("minBytesPerSecond", minBytesPerSecond);
+        info.put("maxBytesPerSecond", maxBytesPerSecond);
+        info.put("phases", phaseList);
+        info.put("windows", new ArrayList(windows));
+        info.put("events", new ArrayList(events));
+        return info;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.yc_product_plugin;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 传输进度上报 (表盘和固件升级共用)
+ * <p>
+ * SDK每次回调进度时只记录, 距离上次发送超过最小间隔且进度变化超过最小差值才发送,
+ * 被合并掉的最后一次进度在间隔到期后补发. 进度为数值 (0 - 1), 同时带上
+ * 传输速度 (bytesPerSecond, 总大小未知时为0) 和剩余时间 (eta, 秒).
+ */
+public class YcProductPluginProgressReporter {
+
+    // 最小发送间隔 (ms) 和最小进度变化, 可以通过 setProgressReportConfig 修改
+    private static volatile long minIntervalMs = 200;
+    private static volatile float minDelta = 0.01f;
+
+    private final MethodChannel methodChannel;
+    private final Handler handler;
+    private final String method;
+    private final int code;
+    private final long totalBytes;
+    private final HashMap extras = new HashMap();
+
+    private long startMs = -1;
+    private long lastSentMs = -1;
+    private float lastSentProgress = -1;
+    private float latestProgress = 0;
+    private boolean isFlushScheduled = false;
+    private volatile boolean isFinished = false;
+
+    /**
+     * @param methodChannel 通道
+     * @param handler       主线程
+     * @param method        Flutter 方法名, 如 upgradeState
+     * @param code          进度状态码
+     * @param totalBytes    传输总字节数, 未知时为0
+     */
+    public YcProductPluginProgressReporter(MethodChannel methodChannel, Handler handler, String method, int code, long totalBytes) {
+        this.methodChannel = methodChannel;
+        this.handler = handler;
+        this.method = method;
+        this.code = code;
+        this.totalBytes = Math.max(0, totalBytes);
+    }
+
+    /**
+     * 设置上报频率
+     */
+    public static void setProgressReportConfig(Object arguments, MethodChannel.Result result) {
+
+        int state = YcProductPluginFlutterType.PluginState.succeed;
+        try {
+            ArrayList list = (ArrayList) arguments;
+            minIntervalMs = Math.max(0, ((Number) list.get(0)).longValue());
+            minDelta = Math.max(0, ((Number) list.get(1)).floatValue());
+        } catch (Exception e) {
+            state = YcProductPluginFlutterType.PluginState.failed;
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", state);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    /**
+     * 新的进度, 可以在任意线程调用
+     *
+     * @param progress 0 - 1
+     */
+    public synchronized void report(float progress) {
+
+        if (isFinished) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (startMs < 0) {
+            startMs = now;
+        }
+        latestProgress = Math.max(0, Math.min(1, progress));
+
+        if (latestProgress == lastSentProgress ||
+                (latestProgress - lastSentProgress < minDelta && latestProgress < 1)) {
+            return;
+        }
+
+        long waitMs = lastSentMs < 0 ? 0 : lastSentMs + minIntervalMs - now;
+        if (waitMs <= 0 || latestProgress >= 1) {
+            send(now);
+        } else if (!isFlushScheduled) {
+            // 间隔到期后补发最新进度
+            isFlushScheduled = true;
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, waitMs);
+        }
+    }
+
+    /**
+     * 每次上报附带的字段
+     */
+    public synchronized void setExtra(String key, Object value) {
+        extras.put(key, value);
+    }
+
+    /**
+     * 传输结束: 先发送被合并掉的最后一次进度, 之后的进度不再发送
+     */
+    public synchronized void finish() {
+        if (isFinished) {
+            return;
+        }
+        if (startMs >= 0 && latestProgress != lastSentProgress) {
+            send(SystemClock.elapsedRealtime());
+        }
+        isFinished = true;
+    }
+
+    private synchronized void flush() {
+        isFlushScheduled = false;
+        if (!isFinished && latestProgress != lastSentProgress) {
+            send(SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void send(long now) {
+
+        lastSentMs = now;
+        lastSentProgress = latestProgress;
+
+        double elapsed = (now - startMs) / 1000.0;
+        double bytesPerSecond = 0;
+        double eta = -1;
+        if (elapsed > 0 && latestProgress > 0) {
+            bytesPerSecond = totalBytes * latestProgress / elapsed;
+            eta = elapsed * (1 - latestProgress) / latestProgress;
+        }
+
+        HashMap info = new HashMap(extras);
+        info.put("code", code);
+        info.put("progress", (double) latestProgress);
+        info.put("error", "");
+        info.put("bytesPerSecond", Math.round(bytesPerSecond));
+        info.put("eta", eta < 0 ? -1L : Math.round(eta));
+
+        // 是否发送在这里已经决定 (结束后不会再调用), 主线程按顺序执行,
+        // 排在最终状态之前的进度 (包括 1.0) 都会送达
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                methodChannel.invokeMethod(method, info);
+            }
+        });
+    }
+}
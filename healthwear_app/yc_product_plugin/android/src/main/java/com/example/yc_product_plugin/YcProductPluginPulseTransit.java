@@ -0,0 +1,253 @@
+package com.example.yc_product_plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * ECG-PPG 同步和脉搏传导时间 (PTT)
+ * <p>
+ * ECG和PPG数据包到达时用同一个单调时钟打时间戳, 按采样率推算每个采样点的时间,
+ * 放入有界的抖动缓冲. ECG上做流式R波检测, 等PPG数据覆盖到R波之后的搜索窗口时,
+ * 取窗口内上升斜率最大的点作为脉搏到达时间, PTT = 脉搏到达 - R波.
+ */
+public class YcProductPluginPulseTransit {
+
+    // 抖动缓冲长度 (秒)
+    static final int bufferSeconds = 4;
+
+    // R波之后搜索脉搏到达的窗口 (ms)
+    static final int searchStartMs = 100;
+    static final int searchEndMs = 600;
+
+    // 等待PPG的R波数量上限
+    static final int maxPendingBeats = 16;
+
+    // 允许的设备时钟漂移 (ppm), 用于时钟偏移的缓慢回升
+    static final double clockDriftPpm = 500;
+
+    /**
+     * 单路波形: 采样时间推算 + 环形缓冲
+     */
+    static class Stream {
+
+        final int sampleRate;
+        final double periodNs;
+        final float[] values;
+        final long[] times;
+        long count = 0;             // 已写入采样总数
+
+        private boolean isAnchored = false;
+        private double offsetNs = 0;
+
+        Stream(int sampleRate) {
+            this.sampleRate = sampleRate;
+            this.periodNs = 1e9 / sampleRate;
+            int capacity = sampleRate * bufferSeconds;
+            values = new float[capacity];
+            times = new long[capacity];
+        }
+
+        /**
+         * 写入一包采样
+         *
+         * @param samples   采样
+         * @param arrivalNs 数据包到达时间 (单调时钟)
+         * @return 本包第一个采样的序号
+         */
+        long append(List samples, long arrivalNs) {
+
+            int n = samples.size();
+            long first = count;
+
+            // 数据包到达时间是最后一个采样时间的上界, 取延迟最小的估计作为偏移,
+            // 再按允许的漂移缓慢回升, 跟踪设备时钟偏慢的情况
+            double candidate = arrivalNs - (first + n - 1) * periodNs;
+            if (!isAnchored) {
+                offsetNs = candidate;
+                isAnchored = true;
+            } else {
+                offsetNs = Math.min(offsetNs + n * periodNs * clockDriftPpm * 1e-6, candidate);
+            }
+
+            for (int i = 0; i < n; i++) {
+                Object item = samples.get(i);
+                float value = item instanceof Number ? ((Number) item).floatValue() : 0;
+                int slot = (int) (count % values.length);
+                values[slot] = value;
+                times[slot] = (long) (offsetNs + count * periodNs);
+                count++;
+            }
+            return first;
+        }
+
+        boolean contains(long index) {
+            return index >= 0 && index < count && count - index <= values.length;
+        }
+
+        float value(long index) {
+            return values[(int) (index % values.length)];
+        }
+
+        long time(long index) {
+            return times[(int) (index % values.length)];
+        }
+
+        long latestTime() {
+            return count > 0 ? time(count - 1) : Long.MIN_VALUE;
+        }
+    }
+
+    private final Stream ecg;
+    private final Stream ppg;
+
+    // 流式R波检测
+    private final YcProductPluginRPeakDetector detector;
+
+    // 等待PPG的R波时间
+    private final long[] pendingBeats = new long[maxPendingBeats];
+    private int pendingCount = 0;
+    private long lastBeatTime = Long.MIN_VALUE;
+
+    private long sessionStartNs = Long.MIN_VALUE;
+
+    /**
+     * @param ecgSampleRate ECG采样率
+     * @param ppgSampleRate PPG采样率
+     */
+    public YcProductPluginPulseTransit(int ecgSampleRate, int ppgSampleRate) {
+        ecg = new Stream(ecgSampleRate);
+        ppg = new Stream(ppgSampleRate);
+        detector = new YcProductPluginRPeakDetector(ecgSampleRate);
+    }
+
+    /**
+     * ECG数据包
+     *
+     * @param samples   滤波后的ECG
+     * @param arrivalNs 到达时间 (SystemClock.elapsedRealtimeNanos)
+     * @return 本次可以计算出的PTT
+     */
+    public synchronized List<HashMap> onEcg(List samples, long arrivalNs) {
+
+        if (samples == null || samples.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (sessionStartNs == Long.MIN_VALUE) {
+            sessionStartNs = arrivalNs;
+        }
+
+        long first = ecg.append(samples, arrivalNs);
+        for (long index = first; index < ecg.count; index++) {
+            long peak = detector.add(ecg.value(index));
+            if (peak >= 0 && ecg.contains(peak)) {
+                addPendingBeat(ecg.time(peak));
+            }
+        }
+        return resolve();
+    }
+
+    /**
+     * PPG数据包
+     *
+     * @param samples   PPG
+     * @param arrivalNs 到达时间 (SystemClock.elapsedRealtimeNanos)
+     * @return 本次可以计算出的PTT
+     */
+    public synchronized List<HashMap> onPpg(List samples, long arrivalNs) {
+
+        if (samples == null || samples.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (sessionStartNs == Long.MIN_VALUE) {
+            sessionStartNs = arrivalNs;
+        }
+
+        ppg.append(samples, arrivalNs);
+        return resolve();
+    }
+
+    private void addPendingBeat(long time) {
+        if (pendingCount == pendingBeats.length) {
+            // 缓冲满, 丢弃最早的R波
+            System.arraycopy(pendingBeats, 1, pendingBeats, 0, pendingCount - 1);
+            pendingCount--;
+        }
+        pendingBeats[pendingCount++] = time;
+    }
+
+    /**
+     * PPG已覆盖搜索窗口的R波, 计算PTT
+     */
+    private List<HashMap> resolve() {
+
+        ArrayList<HashMap> results = new ArrayList<>();
+        long ppgLatest = ppg.latestTime();
+
+        int resolved = 0;
+        while (resolved < pendingCount) {
+
+            long beatTime = pendingBeats[resolved];
+            long windowStart = beatTime + searchStartMs * 1000000L;
+            long windowEnd = beatTime + searchEndMs * 1000000L;
+            if (ppgLatest < windowEnd) {
+                break;
+            }
+            resolved++;
+
+            long arrival = pulseArrival(windowStart, windowEnd);
+
+            long rr = lastBeatTime == Long.MIN_VALUE ? 0 : beatTime - lastBeatTime;
+            lastBeatTime = beatTime;
+
+            if (arrival == Long.MIN_VALUE) {
+                continue;
+            }
+
+            HashMap info = new HashMap();
+            info.put("ptt", (arrival - beatTime) / 1000000.0);
+            info.put("rTime", (beatTime - sessionStartNs) / 1000000);
+            if (rr > 0) {
+                info.put("rr", rr / 1000000);
+                info.put("heartRate", (int) Math.round(60e9 / rr));
+            }
+            results.add(info);
+        }
+
+        if (resolved > 0) {
+            System.arraycopy(pendingBeats, resolved, pendingBeats, 0, pendingCount - resolved);
+            pendingCount -= resolved;
+        }
+        return results;
+    }
+
+    /**
+     * 窗口内PPG上升斜率最大点的时间
+     */
+    private long pulseArrival(long windowStart, long windowEnd) {
+
+        long oldest = Math.max(1, ppg.count - ppg.values.length + 1);
+        long best = Long.MIN_VALUE;
+        double bestSlope = 0;
+
+        for (long index = oldest; index < ppg.count; index++) {
+            long time = ppg.time(index);
+            if (time < windowStart) {
+                continue;
+            }
+            if (time > windowEnd) {
+                break;
+            }
+            long previousTime = ppg.time(index - 1);
+            if (time <= previousTime) {
+                continue;
+            }
+            double slope = (ppg.value(index) - ppg.value(index - 1)) / (double) (time - previousTime);
+            if (slope > bestSlope) {
+                bestSlope = slope;
+                best = (time + previousTime) / 2;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.yc_product_plugin;
+
+import java.util.Arrays;
+
+/**
+ * RGB565 量化 (截断, 有序抖动, Floyd–Steinberg 误差扩散)
+ * <p>
+ * 原地把ARGB像素量化到RGB565能精确表示的颜色, 之后无论SDK还是BMP编码
+ * 按截断方式转成565都不会再损失. 误差缓冲按图片宽度复用, 逐行处理时不分配内存.
+ */
+public class YcProductPluginRGB565Quantizer {
+
+    // 量化方式
+    public static final int modeTruncate = 0;
+    public static final int modeOrdered = 1;
+    public static final int modeFloydSteinberg = 2;
+
+    // 4x4 Bayer 矩阵 (0-15)
+    private static final int[] bayer = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5,
+    };
+
+    // Floyd–Steinberg 误差 (放大16倍), 每个像素 r g b 三个分量, 左右各留一个像素
+    private static int[] currentErrors = new int[0];
+    private static int[] nextErrors = new int[0];
+
+    /**
+     * 颜色转RGB565 (四舍五入)
+     *
+     * @param color ARGB
+     */
+    public static int toRGB565(int color) {
+        int red = nearest5((color >> 16) & 0xFF);
+        int green = nearest6((color >> 8) & 0xFF);
+        int blue = nearest5(color & 0xFF);
+        return (red << 11) | (green << 5) | blue;
+    }
+
+    /**
+     * 颜色转RGB565 (直接截断低位)
+     *
+     * @param color ARGB
+     */
+    public static int truncateToRGB565(int color) {
+        int red = (color >> 19) & 0x1F;
+        int green = (color >> 10) & 0x3F;
+        int blue = (color >> 3) & 0x1F;
+        return (red << 11) | (green << 5) | blue;
+    }
+
+    /**
+     * RGB565转ARGB (高位复制到低位)
+     */
+    public static int toARGB(int rgb565) {
+        int red = expand5((rgb565 >> 11) & 0x1F);
+        int green = expand6((rgb565 >> 5) & 0x3F);
+        int blue = expand5(rgb565 & 0x1F);
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * 原地量化, 保留透明度
+     *
+     * @param pixels ARGB像素, 从上到下
+     * @param width  宽
+     * @param height 高
+     * @param mode   量化方式
+     */
+    public static synchronized void quantize(int[] pixels, int width, int height, int mode) {
+
+        if (mode == modeFloydSteinberg) {
+            int size = (width + 2) * 3;
+            if (currentErrors.length < size) {
+                currentErrors = new int[size];
+                nextErrors = new int[size];
+            }
+            Arrays.fill(currentErrors, 0, size, 0);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int start = y * width;
+            switch (mode) {
+                case modeOrdered:
+                    orderedRow(pixels, start, width, y);
+                    break;
+                case modeFloydSteinberg:
+                    floydSteinbergRow(pixels, start, width);
+                    break;
+                default:
+                    truncateRow(pixels, start, width);
+                    break;
+            }
+        }
+    }
+
+    private static void truncateRow(int[] pixels, int start, int width) {
+        for (int x = start; x < start + width; x++) {
+            int color = pixels[x];
+            int red = expand5((color >> 19) & 0x1F);
+            int green = expand6((color >> 10) & 0x3F);
+            int blue = expand5((color >> 3) & 0x1F);
+            pixels[x] = (color & 0xFF000000) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    /**
+     * 有序抖动: 在565的量化等级上加 (0, 1) 的阈值后取整
+     */
+    private static void orderedRow(int[] pixels, int start, int width, int y) {
+        int rowOffset = (y & 3) << 2;
+        for (int x = 0; x < width; x++) {
+            int color = pixels[start + x];
+            // 阈值 (2t + 1) / 32, 放大 255 * 32 倍
+            int threshold = (bayer[rowOffset + (x & 3)] * 2 + 1) * 255;
+
+            int red = (((color >> 16) & 0xFF) * 31 * 32 + threshold) / (255 * 32);
+            int green = (((color >> 8) & 0xFF) * 63 * 32 + threshold) / (255 * 32);
+            int blue = ((color & 0xFF) * 31 * 32 + threshold) / (255 * 32);
+
+            pixels[start + x] = (color & 0xFF000000) |
+                    (expand5(red) << 16) | (expand6(green) << 8) | expand5(blue);
+        }
+    }
+
+    /**
+     * Floyd–Steinberg: 误差按 7/16, 3/16, 5/16, 1/16 扩散到右边和下一行
+     */
+    private static void floydSteinbergRow(int[] pixels, int start, int width) {
+
+        int[] current = currentErrors;
+        int[] next = nextErrors;
+        Arrays.fill(next, 0, (width + 2) * 3, 0);
+
+        for (int x = 0; x < width; x++) {
+
+            int color = pixels[start + x];
+            int index = (x + 1) * 3;
+
+            int red = clamp(((color >> 16) & 0xFF) + ((current[index] + 8) >> 4));
+            int green = clamp(((color >> 8) & 0xFF) + ((current[index + 1] + 8) >> 4));
+            int blue = clamp((color & 0xFF) + ((current[index + 2] + 8) >> 4));
+
+            int red8 = expand5(nearest5(red));
+            int green8 = expand6(nearest6(green));
+            int blue8 = expand5(nearest5(blue));
+
+            pixels[start + x] = (color & 0xFF000000) | (red8 << 16) | (green8 << 8) | blue8;
+
+            spread(current, next, index, red - red8);
+            spread(current, next, index + 1, green - green8);
+            spread(current, next, index + 2, blue - blue8);
+        }
+
+        // 下一行
+        currentErrors = next;
+        nextErrors = current;
+    }
+
+    private static void spread(int[] current, int[] next, int index, int error) {
+        current[index + 3] += error * 7;
+        next[index - 3] += error * 3;
+        next[index] += error * 5;
+        next[index + 3] += error;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private static int nearest5(int value) {
+        return (value * 31 + 127) / 255;
+    }
+
+    private static int nearest6(int value) {
+        return (value * 63 + 127) / 255;
+    }
+
+    private static int expand5(int value) {
+        return (value << 3) | (value >> 2);
+    }
+
+    private static int expand6(int value) {
+        return (value << 2) | (value >> 4);
+    }
+}
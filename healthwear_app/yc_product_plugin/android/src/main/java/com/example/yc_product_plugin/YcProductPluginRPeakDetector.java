@@ -0,0 +1,152 @@
+package com.example.yc_product_plugin;
+
+/**
+ * 流式R波检测 (简化的Pan-Tompkins: 差分, 平方, 150ms滑动积分, 自适应阈值)
+ * <p>
+ * 逐点输入, 比输入晚一个采样点确认能量的局部极大, 再回溯一个积分窗口取原始信号
+ * 幅值最大处作为R波. 实时PTT和离线分析共用.
+ */
+public class YcProductPluginRPeakDetector {
+
+    private final int sampleRate;
+    private final int learnSamples;
+    private final int refractory;
+
+    // 150ms 滑动积分
+    private final float[] squares;
+    private double squareSum = 0;
+    private float previousSample = 0;
+
+    // 最近的原始采样, 用于回溯
+    private final float[] history;
+    private long count = 0;
+
+    private float energy1 = 0;
+    private float energy2 = 0;
+
+    // 前2秒学习初始阈值
+    private boolean isLearned = false;
+    private float learnMax = 0;
+    private double learnSum = 0;
+
+    private double signalLevel = 0;
+    private double noiseLevel = 0;
+    private double threshold = 0;
+    private long lastPeak = Long.MIN_VALUE / 2;
+
+    /**
+     * @param sampleRate 采样率
+     */
+    public YcProductPluginRPeakDetector(int sampleRate) {
+        this.sampleRate = sampleRate;
+        learnSamples = 2 * sampleRate;
+        refractory = (int) (0.200f * sampleRate);
+        squares = new float[Math.max(1, (int) (0.150f * sampleRate))];
+        history = new float[squares.length + 2];
+    }
+
+    /**
+     * 用已有数据的前2秒 (不足时用全部) 确定初始阈值, 之后 add 的每个采样都参与检测.
+     * 不调用时, add 的前2秒只用于学习
+     */
+    public void learn(float[] samples, int count) {
+
+        int n = Math.min(count, learnSamples);
+        if (n <= 0) {
+            return;
+        }
+
+        YcProductPluginRPeakDetector probe = new YcProductPluginRPeakDetector(sampleRate);
+        float max = 0;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            float energy = probe.energy(samples[i]);
+            max = Math.max(max, energy);
+            sum += energy;
+        }
+        setLevels(max, sum / n);
+    }
+
+    /**
+     * 输入下一个采样
+     *
+     * @return 新检测到的R波的采样序号 (从0开始), 没有时为 -1
+     */
+    public long add(float sample) {
+
+        long index = count;
+        float energy = energy(sample);
+
+        if (!isLearned) {
+            learnMax = Math.max(learnMax, energy);
+            learnSum += energy;
+            if (index == learnSamples - 1) {
+                setLevels(learnMax, learnSum / learnSamples);
+            }
+            energy2 = energy1;
+            energy1 = energy;
+            return -1;
+        }
+
+        long peak = -1;
+
+        // 上一个点是能量局部极大
+        if (index >= 2 && energy1 >= energy2 && energy1 >= energy) {
+
+            long candidate = index - 1;
+            if (energy1 > threshold && candidate - lastPeak > refractory) {
+
+                // 回溯到原始信号幅值最大处
+                long best = candidate;
+                float bestValue = Math.abs(value(candidate));
+                for (long j = Math.max(0, candidate - squares.length); j < candidate; j++) {
+                    if (Math.abs(value(j)) > bestValue) {
+                        bestValue = Math.abs(value(j));
+                        best = j;
+                    }
+                }
+
+                if (best - lastPeak > refractory) {
+                    lastPeak = best;
+                    peak = best;
+                }
+                signalLevel = 0.125 * energy1 + 0.875 * signalLevel;
+            } else {
+                noiseLevel = 0.125 * energy1 + 0.875 * noiseLevel;
+            }
+            threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+        }
+
+        energy2 = energy1;
+        energy1 = energy;
+        return peak;
+    }
+
+    /**
+     * 差分平方的滑动平均, 同时记录原始采样
+     */
+    private float energy(float sample) {
+
+        long index = count++;
+        history[(int) (index % history.length)] = sample;
+
+        float diff = index > 0 ? sample - previousSample : 0;
+        previousSample = sample;
+
+        int slot = (int) (index % squares.length);
+        squareSum += diff * diff - squares[slot];
+        squares[slot] = diff * diff;
+        return (float) (squareSum / squares.length);
+    }
+
+    private float value(long index) {
+        return history[(int) (index % history.length)];
+    }
+
+    private void setLevels(float maxEnergy, double meanEnergy) {
+        signalLevel = maxEnergy * 0.5;
+        noiseLevel = meanEnergy * 0.5;
+        threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+        isLearned = true;
+    }
+}
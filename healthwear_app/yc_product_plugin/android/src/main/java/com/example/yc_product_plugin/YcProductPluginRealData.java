@@ -17,6 +17,45 @@ public class YcProductPluginRealData {
 
     private static java.util.concurrent.ConcurrentHashMap<Integer, Long> lastEmitTimes = new java.util.concurrent.ConcurrentHashMap<>();
 
+    // 多通道PPG绘图抽稀 (red / green / ir)
+    static int ppgDisplaySampleRate = YcProductPluginECG.ppgSampleRate;
+    private static final HashMap<String, YcProductPluginWaveDecimator> ppgChannelDecimators = new HashMap<>();
+
+    /**
+     * 多通道PPG按通道抽稀, 采样率变化时重建
+     */
+    private static synchronized List decimatePPGChannel(String channel, List samples) {
+        YcProductPluginWaveDecimator decimator = ppgChannelDecimators.get(channel);
+        if (decimator == null || decimator.getSampleRate() != ppgDisplaySampleRate) {
+            decimator = new YcProductPluginWaveDecimator(ppgDisplaySampleRate);
+            ppgChannelDecimators.put(channel, decimator);
+        }
+        return decimator.process(samples);
+    }
+
+    /**
+     * 多通道PPG绘图数据: 按通道抽稀后单独发送, 原始事件不变
+     */
+    private static void postPPGDisplayData(Handler handler, EventChannel.EventSink eventSink, HashMap hashMap) {
+
+        HashMap displayInfo = new HashMap();
+        displayInfo.put("red", decimatePPGChannel("red", (List<Integer>) hashMap.get("red")));
+        displayInfo.put("green", decimatePPGChannel("green", (List<Integer>) hashMap.get("green")));
+        displayInfo.put("ir", decimatePPGChannel("ir", (List<Integer>) hashMap.get("ir")));
+        displayInfo.put("dataType", hashMap.get("dataType"));
+        displayInfo.put("sampleType", hashMap.get("sampleType"));
+
+        HashMap map = new HashMap();
+        map.put(YcProductPluginFlutterType.NativeEventType.deviceMultiChannelPPGDisplayData, displayInfo);
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!YcProductPlugin.isAppInBackground) eventSink.success(map);
+            }
+        });
+    }
+
     /**
      * 监听实时数据
      *
@@ -31,10 +70,18 @@ public class YcProductPluginRealData {
             @Override
             public void onRealDataResponse(int i, HashMap hashMap) {
                 System.out.println("LHY-REALDATA-RAW: dataType=" + i + " map=" + hashMap);
+                // 波形抽稀开启时, 多通道PPG的绘图通道每包抽稀后发送 (按点数限流),
+                // 全分辨率的原始事件仍然按下面的规则限流
+                if (i == Constants.DATATYPE.Real_UploadMulPhotoelectricWaveform && hashMap != null &&
+                        YcProductPluginWaveDecimator.isEnabled()) {
+                    postPPGDisplayData(handler, eventSink, hashMap);
+                }
+
                 // --- BUG 2: Throttling Check (Max 1 event per 1000ms per characteristic) ---
                 long now = System.currentTimeMillis();
                 Long lastTime = lastEmitTimes.get(i);
                 if (lastTime != null && (now - lastTime) < 1000) {
+                    YcProductPluginECGMetrics.onEventDropped(i);
                     return; // Drop packet to prevent BLASTBufferQueue exhaustion over EventChannel
                 }
                 lastEmitTimes.put(i, now);
@@ -0,0 +1,211 @@
+package com.example.yc_product_plugin;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.yucheng.ycbtsdk.bean.ScanDeviceBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 扫描结果索引 (按 MAC)
+ * <p>
+ * 每台设备只保留最新一次广播的信息和 BluetoothDevice, 更新和查询都是 O(1).
+ * 更新时移到末尾, 所以头部总是最久没有收到广播的设备, 超过有效期或条数上限时从头部删除.
+ * 信号强度用一维卡尔曼滤波平滑 (smoothedRssi), 排序按平滑后的值从近到远.
+ */
+public class YcProductPluginScanIndex {
+
+    // 设备多久没有广播后删除 (ms)
+    static final long maxAgeMs = 5 * 60 * 1000;
+
+    // 最多保留的设备数
+    static final int maxEntries = 256;
+
+    // 卡尔曼滤波: 每次广播的过程噪声和测量噪声 (dB²)
+    static final double processNoise = 0.5;
+    static final double measurementNoise = 16;
+
+    // 超过这个时间没有广播, 重新开始滤波 (ms)
+    static final long filterResetMs = 5000;
+
+    // 至少收到几次广播后平滑值才可信 (用于信号强度条件)
+    static final int minFilterSamples = 3;
+
+    /**
+     * 一台设备的扫描信息
+     */
+    static class Entry {
+        String macAddress;
+        String name;
+        int rssi;
+        int deviceColor;
+        int deviceIndex;
+        int imageIndex;
+        BluetoothDevice device;
+        long firstSeenMs;
+        long lastSeenMs;
+
+        // 滤波后的信号强度, 估计方差和参与滤波的次数
+        double smoothedRssi;
+        double variance = -1;
+        int sampleCount = 0;
+
+        void filter(int rssi, long elapsedMs) {
+            if (variance < 0 || elapsedMs > filterResetMs) {
+                smoothedRssi = rssi;
+                variance = measurementNoise;
+                sampleCount = 1;
+                return;
+            }
+            variance += processNoise;
+            double gain = variance / (variance + measurementNoise);
+            smoothedRssi += gain * (rssi - smoothedRssi);
+            variance *= 1 - gain;
+            sampleCount++;
+        }
+
+        /**
+         * 平滑值是否可信, 只收到一两次广播时不用于判断距离
+         */
+        boolean isSettled() {
+            return sampleCount >= minFilterSamples;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> deviceInfo = new HashMap<String, Object>();
+            deviceInfo.put("name", name);
+            deviceInfo.put("macAddress", macAddress);
+            deviceInfo.put("deviceIdentifier", macAddress);
+            deviceInfo.put("rssiValue", rssi);
+            deviceInfo.put("smoothedRssi", (int) Math.round(smoothedRssi));
+            deviceInfo.put("deviceColor", deviceColor);
+            deviceInfo.put("deviceIndex", deviceIndex);
+            deviceInfo.put("imageIndex", imageIndex);
+            return deviceInfo;
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    // 平滑后的值按 dB 取整比较, 相同时按 MAC, 微小波动不会改变顺序
+    static final Comparator<Entry> nearestFirst = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int result = Long.compare(Math.round(b.smoothedRssi), Math.round(a.smoothedRssi));
+            return result != 0 ? result : key(a.macAddress).compareTo(key(b.macAddress));
+        }
+    };
+
+    private static String key(String macAddress) {
+        return macAddress == null ? "" : macAddress.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 记录一次广播
+     *
+     * @return 更新后的设备信息
+     */
+    static synchronized Entry update(ScanDeviceBean scanDeviceBean) {
+
+        long now = SystemClock.elapsedRealtime();
+        String key = key(scanDeviceBean.getDeviceMac());
+        YcProductPluginConnectionMetrics.onAdvertisement(key);
+
+        // 先删除再放入, 保持最近更新的在末尾
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            entry = new Entry();
+            entry.firstSeenMs = now;
+        }
+
+        entry.macAddress = scanDeviceBean.getDeviceMac();
+        entry.name = TextUtils.isEmpty(scanDeviceBean.getDeviceName()) ?
+                scanDeviceBean.getDeviceMac() : scanDeviceBean.getDeviceName();
+        entry.rssi = scanDeviceBean.getDeviceRssi();
+        entry.filter(entry.rssi, now - entry.lastSeenMs);
+        entry.deviceColor = scanDeviceBean.ringColor;
+        entry.deviceIndex = scanDeviceBean.ringNumber;
+        entry.imageIndex = scanDeviceBean.imageId;
+        if (scanDeviceBean.device != null) {
+            entry.device = scanDeviceBean.device;
+        }
+        entry.lastSeenMs = now;
+        entries.put(key, entry);
+
+        evict(now);
+        return entry;
+    }
+
+    /**
+     * 扫描到的 BluetoothDevice, 没有或已过期时返回null
+     */
+    static synchronized BluetoothDevice device(String macAddress) {
+        Entry entry = entries.get(key(macAddress));
+        if (entry == null || SystemClock.elapsedRealtime() - entry.lastSeenMs > maxAgeMs) {
+            return null;
+        }
+        return entry.device;
+    }
+
+    /**
+     * 指定时间之后收到广播的设备, 按最近更新排在后面
+     *
+     * @param sinceMs SystemClock.elapsedRealtime()
+     */
+    static synchronized ArrayList<Map<String, Object>> list(long sinceMs) {
+        return list(sinceMs, false, 0);
+    }
+
+    /**
+     * 指定时间之后收到广播的设备
+     *
+     * @param sinceMs  SystemClock.elapsedRealtime()
+     * @param isRanked 按平滑后的信号强度从近到远排序
+     * @param topN     只返回前几个, 0 表示全部
+     */
+    static synchronized ArrayList<Map<String, Object>> list(long sinceMs, boolean isRanked, int topN) {
+
+        evict(SystemClock.elapsedRealtime());
+
+        ArrayList<Entry> selected = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.lastSeenMs >= sinceMs) {
+                selected.add(entry);
+            }
+        }
+
+        if (isRanked) {
+            Collections.sort(selected, nearestFirst);
+        }
+
+        int count = topN > 0 ? Math.min(topN, selected.size()) : selected.size();
+        ArrayList<Map<String, Object>> list = new ArrayList<Map<String, Object>>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(selected.get(i).toMap());
+        }
+        return list;
+    }
+
+    /**
+     * 删除过期的设备
+     */
+    private static void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.lastSeenMs <= maxAgeMs && entries.size() <= maxEntries) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+}
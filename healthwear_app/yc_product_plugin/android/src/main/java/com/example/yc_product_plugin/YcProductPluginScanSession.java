@@ -0,0 +1,241 @@
+package com.example.yc_product_plugin;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.yucheng.ycbtsdk.YCBTClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 一次扫描
+ * <p>
+ * 扫描到的设备按 MAC 合并, 每隔 intervalMs 通过 EventChannel 发送一次
+ * (deviceScanResult). 设置了目标 MAC, 名称前缀或信号强度时, 第一个符合条件的设备
+ * 出现就停止扫描并返回结果, 否则到时间后返回这次扫描到的全部设备.
+ * 信号强度条件使用平滑后的值; rankByRssi 时结果从近到远排序, topN 限制返回个数.
+ */
+public class YcProductPluginScanSession {
+
+    // 默认合并间隔 (ms)
+    static final int defaultIntervalMs = 200;
+
+    private static YcProductPluginScanSession current;
+
+    private final Handler handler;
+    private final EventChannel.EventSink eventSink;
+    private final MethodChannel.Result result;
+
+    private final int time;
+    private final int intervalMs;
+    private final String targetMac;
+    private final String namePrefix;
+    private final Integer minRssi;
+    private final boolean isRanked;
+    private final int topN;
+
+    private final long startMs = SystemClock.elapsedRealtime();
+    private final LinkedHashMap<String, Map<String, Object>> pending = new LinkedHashMap<>();
+    private boolean isFlushScheduled = false;
+    private boolean isFinished = false;
+
+    private final Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            finish(false);
+        }
+    };
+
+    private YcProductPluginScanSession(Handler handler, EventChannel.EventSink eventSink, MethodChannel.Result result,
+                                       int time, int intervalMs, String targetMac, String namePrefix, Integer minRssi,
+                                       boolean isRanked, int topN) {
+        this.handler = handler;
+        this.eventSink = eventSink;
+        this.result = result;
+        this.time = time;
+        this.intervalMs = Math.max(0, intervalMs);
+        this.targetMac = targetMac == null || targetMac.isEmpty() ? null : targetMac.toUpperCase(Locale.ROOT);
+        this.namePrefix = namePrefix == null || namePrefix.isEmpty() ? null : namePrefix.toLowerCase(Locale.ROOT);
+        this.minRssi = minRssi;
+        this.isRanked = isRanked;
+        this.topN = Math.max(0, topN);
+    }
+
+    /**
+     * 开始新的扫描, 上一次扫描没有结束时先返回它的结果
+     *
+     * @param arguments 扫描秒数, 或 {time, intervalMs, macAddress, namePrefix, minRssi, rankByRssi, topN}
+     */
+    static YcProductPluginScanSession start(Handler handler, EventChannel.EventSink eventSink,
+                                            Object arguments, @NonNull MethodChannel.Result result) {
+
+        int time;
+        int intervalMs = defaultIntervalMs;
+        String macAddress = null;
+        String namePrefix = null;
+        Integer minRssi = null;
+        boolean isRanked = false;
+        int topN = 0;
+
+        if (arguments instanceof Map) {
+            Map options = (Map) arguments;
+            time = options.get("time") == null ? 6 : ((Number) options.get("time")).intValue();
+            if (options.get("intervalMs") != null) {
+                intervalMs = ((Number) options.get("intervalMs")).intValue();
+            }
+            macAddress = (String) options.get("macAddress");
+            namePrefix = (String) options.get("namePrefix");
+            if (options.get("minRssi") != null) {
+                minRssi = ((Number) options.get("minRssi")).intValue();
+            }
+            isRanked = Boolean.TRUE.equals(options.get("rankByRssi"));
+            if (options.get("topN") != null) {
+                topN = ((Number) options.get("topN")).intValue();
+            }
+        } else {
+            time = (int) arguments; // 这里是秒
+        }
+
+        YcProductPluginScanSession session = new YcProductPluginScanSession(
+                handler, eventSink, result, time, intervalMs, macAddress, namePrefix, minRssi, isRanked, topN);
+
+        YcProductPluginScanSession previous;
+        synchronized (YcProductPluginScanSession.class) {
+            previous = current;
+            current = session;
+        }
+        if (previous != null) {
+            previous.finish(false);
+        }
+
+        handler.postDelayed(session.timeout, time * 1000L);
+        return session;
+    }
+
+    /**
+     * 扫描秒数
+     */
+    int getTime() {
+        return time;
+    }
+
+    /**
+     * 停止扫描时返回当前结果
+     */
+    static void stop() {
+        YcProductPluginScanSession session;
+        synchronized (YcProductPluginScanSession.class) {
+            session = current;
+        }
+        if (session != null) {
+            session.finish(false);
+        }
+    }
+
+    /**
+     * 扫描到设备 (可以在任意线程调用)
+     */
+    synchronized void onDevice(YcProductPluginScanIndex.Entry entry) {
+
+        if (isFinished) {
+            return;
+        }
+
+        pending.put(entry.macAddress, entry.toMap());
+        if (!isFlushScheduled) {
+            isFlushScheduled = true;
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, intervalMs);
+        }
+
+        if (isMatched(entry)) {
+            finish(true);
+        }
+    }
+
+    private boolean isMatched(YcProductPluginScanIndex.Entry entry) {
+
+        if (targetMac == null && namePrefix == null && minRssi == null) {
+            return false;
+        }
+        if (targetMac != null && !targetMac.equals(entry.macAddress.toUpperCase(Locale.ROOT))) {
+            return false;
+        }
+        if (namePrefix != null && (entry.name == null || !entry.name.toLowerCase(Locale.ROOT).startsWith(namePrefix))) {
+            return false;
+        }
+        // 平滑值需要几次广播才稳定, 一次很强的信号不会结束扫描
+        return minRssi == null || (entry.isSettled() && Math.round(entry.smoothedRssi) >= minRssi);
+    }
+
+    private synchronized void flush() {
+
+        isFlushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Map<String, Object>> devices = new ArrayList<>(pending.values());
+        pending.clear();
+
+        if (eventSink == null || YcProductPlugin.isAppInBackground) {
+            return;
+        }
+
+        HashMap map = new HashMap();
+        map.put(YcProductPluginFlutterType.NativeEventType.deviceScanResult, devices);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                eventSink.success(map);
+            }
+        });
+    }
+
+    /**
+     * 结束扫描并返回结果
+     *
+     * @param isMatched 找到了目标设备
+     */
+    private synchronized void finish(boolean isMatched) {
+
+        if (isFinished) {
+            return;
+        }
+        isFinished = true;
+        handler.removeCallbacks(timeout);
+
+        if (isMatched) {
+            YCBTClient.stopScanBle();
+        }
+
+        flush();
+
+        synchronized (YcProductPluginScanSession.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+
+        ArrayList<Map<String, Object>> devices = YcProductPluginScanIndex.list(startMs, isRanked, topN);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                result.success(devices);
+            }
+        });
+    }
+}
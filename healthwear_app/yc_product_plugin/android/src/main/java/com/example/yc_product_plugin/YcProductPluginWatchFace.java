@@ -15,18 +15,15 @@ import com.jieli.jl_rcsp.interfaces.watch.OnWatchOpCallback;
 import com.jieli.jl_rcsp.model.base.BaseError;
 import com.jieli.jl_rcsp.model.device.VoiceData;
 import com.jieli.jl_rcsp.tool.WatchCacheManager;
-import com.yucheng.ycbtsdk.AITools;
 import com.yucheng.ycbtsdk.Constants;
 import com.yucheng.ycbtsdk.YCBTClient;
 import com.yucheng.ycbtsdk.bean.DialsBean;
-import com.yucheng.ycbtsdk.bean.ImageBean;
 import com.yucheng.ycbtsdk.jl.WatchManager;
 import com.yucheng.ycbtsdk.response.BleDataResponse;
 import com.yucheng.ycbtsdk.utils.DialUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -123,7 +120,7 @@ public class YcProductPluginWatchFace {
      * @param arguments
      * @param result
      */
-    public static void deleteWatchFace(Object arguments, @NonNull MethodChannel.Result result) {
+    public static void deleteWatchFace(Context context, Object arguments, @NonNull MethodChannel.Result result) {
 
         int dialID = (int) arguments;
 
@@ -131,6 +128,10 @@ public class YcProductPluginWatchFace {
             @Override
             public void onDataResponse(int i, float v, HashMap hashMap) {
 
+                if (0 == i) {
+                    YcProductPluginWatchFaceCache.remove(context, YCBTClient.getBindDeviceMac(), dialID);
+                }
+
                 int state = YcProductPlugin.convertPluginState(i);
                 HashMap map = new HashMap();
                 map.put("code", state);
@@ -143,11 +144,14 @@ public class YcProductPluginWatchFace {
 
     /**
      * 下载表盘
+     * <p>
+     * 同一台设备上已按相同内容(哈希和版本)安装过, 且设备表盘列表中仍然存在时,
+     * 直接切换到该表盘, 不再重新传输.
      *
      * @param arguments
      * @param result
      */
-    public static void installWatchFace(MethodChannel methodChannel, Handler handler, Object arguments, @NonNull MethodChannel.Result result) {
+    public static void installWatchFace(Context context, MethodChannel methodChannel, Handler handler, Object arguments, @NonNull MethodChannel.Result result) {
 
         ArrayList list = (ArrayList) arguments;
         if (list.size() < 5) {
@@ -164,26 +168,225 @@ public class YcProductPluginWatchFace {
         int dialVersion = (int) list.get(3);
         String filePath = (String) list.get(4);
 
-        try {
+        YcProductPluginProgressReporter reporter = new YcProductPluginProgressReporter(
+                methodChannel, handler, "upgradeState",
+                YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace,
+                new File(filePath).length());
 
-            FileInputStream inputStream = new FileInputStream(new File(filePath));
-            byte[] buffer = new byte[1024];
-            int len = 0;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            while ((len = inputStream.read(buffer)) != -1) {
-                bos.write(buffer, 0, len);
+        installWatchFace(context, handler, isEnable, dialID, blockCount, dialVersion, filePath, new InstallProgressListener() {
+            @Override
+            public void onProgress(float progress) {
+                reporter.report(progress);
             }
 
-            bos.flush();
+            @Override
+            public void onFinish() {
+                reporter.finish();
+            }
+        }, result);
+    }
 
-            bos.toByteArray();
+    /**
+     * 表盘传输进度 (在SDK回调线程调用)
+     */
+    interface InstallProgressListener {
 
-            HashMap info = new HashMap();
+        /**
+         * @param progress 0 - 1
+         */
+        void onProgress(float progress);
+
+        /**
+         * 安装结束 (成功或失败), 在发送结果之前调用, 之后不再有进度
+         */
+        void onFinish();
+    }
+
+    /**
+     * 下载表盘, 进度回调给 listener
+     * <p>
+     * 文件哈希在子线程计算 (同一文件按路径, 大小和修改时间缓存), 完成后回到主线程继续
+     */
+    static void installWatchFace(
+            Context context,
+            Handler handler,
+            boolean isEnable,
+            int dialID,
+            int blockCount,
+            int dialVersion,
+            String filePath,
+            InstallProgressListener listener,
+            @NonNull MethodChannel.Result result) {
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                String hash;
+                try {
+                    hash = YcProductPluginWatchFaceCache.hashFile(filePath);
+                } catch (Exception e) {
+
+                    listener.onFinish();
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            HashMap map = new HashMap();
+                            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+                            map.put("data", e.getMessage());
+                            result.success(map);
+                        }
+                    });
+                    return;
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        installWatchFace(context, handler, isEnable, dialID, blockCount, dialVersion, filePath, hash, listener, result);
+                    }
+                });
+            }
+        }).start();
+    }
+
+    /**
+     * 已按相同内容安装过且设备上仍然存在时直接切换, 否则传输
+     */
+    private static void installWatchFace(
+            Context context,
+            Handler handler,
+            boolean isEnable,
+            int dialID,
+            int blockCount,
+            int dialVersion,
+            String filePath,
+            String hash,
+            InstallProgressListener listener,
+            @NonNull MethodChannel.Result result) {
+
+        String macAddress = YCBTClient.getBindDeviceMac();
+
+        if (!YcProductPluginWatchFaceCache.isInstalled(context, macAddress, dialID, dialVersion, hash)) {
+            downloadWatchFace(context, handler, isEnable, dialID, blockCount, dialVersion, filePath, hash, listener, result);
+            return;
+        }
+
+        // 确认设备上的表盘还在 (可能已在设备上删除或恢复出厂)
+        YCBTClient.watchDialInfo(new BleDataResponse() {
+            @Override
+            public void onDataResponse(int i, float v, HashMap hashMap) {
+
+                if (0 != i || !containsDial(hashMap, dialID, dialVersion)) {
+                    YcProductPluginWatchFaceCache.remove(context, macAddress, dialID);
+                    downloadWatchFace(context, handler, isEnable, dialID, blockCount, dialVersion, filePath, hash, listener, result);
+                    return;
+                }
+
+                if (!isEnable) {
+                    listener.onFinish();
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            HashMap map = new HashMap();
+                            map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                            map.put("data", "");
+                            result.success(map);
+                        }
+                    });
+                    return;
+                }
+
+                YCBTClient.watchDialSetCurrent(dialID, new BleDataResponse() {
+                    @Override
+                    public void onDataResponse(int i, float v, HashMap hashMap) {
+
+                        if (0 != i) {
+                            downloadWatchFace(context, handler, isEnable, dialID, blockCount, dialVersion, filePath, hash, listener, result);
+                            return;
+                        }
+
+                        listener.onFinish();
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                HashMap map = new HashMap();
+                                map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                                map.put("data", "");
+                                result.success(map);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 设备表盘列表中是否有指定版本的表盘
+     */
+    private static boolean containsDial(HashMap hashMap, int dialID, int dialVersion) {
+
+        if (null == hashMap) {
+            return false;
+        }
+
+        ArrayList list = new ArrayList();
+        if (hashMap.get("dials") instanceof ArrayList) {
+            list.addAll((ArrayList) hashMap.get("dials"));
+        }
+        if (hashMap.get("customDials") instanceof ArrayList) {
+            list.addAll((ArrayList) hashMap.get("customDials"));
+        }
+
+        for (Object item : list) {
+            DialsBean dialsBean = (DialsBean) item;
+            if (dialsBean.dialplateId == dialID && dialsBean.dialVersion == dialVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 传输表盘文件
+     */
+    private static void downloadWatchFace(
+            Context context,
+            Handler handler,
+            boolean isEnable,
+            int dialID,
+            int blockCount,
+            int dialVersion,
+            String filePath,
+            String hash,
+            InstallProgressListener listener,
+            @NonNull MethodChannel.Result result) {
+
+        String macAddress = YCBTClient.getBindDeviceMac();
+
+        try {
 
-            YCBTClient.watchDialDownload(isEnable ? 1 : 0, bos.toByteArray(), dialID, blockCount, dialVersion, new BleDataResponse() {
+            byte[] dialData = YcProductPluginFileLoader.readFully(filePath);
+
+            YCBTClient.watchDialDownload(isEnable ? 1 : 0, dialData, dialID, blockCount, dialVersion, new BleDataResponse() {
                 @Override
                 public void onDataResponse(int i, float v, HashMap hashMap) {
 
+                    // 进度由 listener 合并发送, 不逐次切换到主线程
+                    if (0 == i && hashMap != null &&
+                            (int) hashMap.get("dataType") == Constants.DATATYPE.WatchDialProgress) {
+                        float progress = (float) hashMap.get("progress");
+                        listener.onProgress(progress * 0.01f);
+                        return;
+                    }
+
+                    // 最终进度在结果之前发出
+                    if (0 == i && hashMap != null) {
+                        listener.onProgress(1);
+                    }
+                    listener.onFinish();
+
                     // 主线程执行
                     handler.post(new Runnable() {
                         @Override
@@ -191,25 +394,12 @@ public class YcProductPluginWatchFace {
 
                             if (0 == i && hashMap != null) {
 
-                                // 获取进度
-                                int type = (int) hashMap.get("dataType");
-                                if (type == Constants.DATATYPE.WatchDialProgress) {
-
-                                    float progress = (float) hashMap.get("progress");
-                                    info.clear();
-                                    info.put("code", YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace);
-                                    info.put("progress", String.format("%.2f", progress * 0.01));
-                                    info.put("error", "");
-
-                                    methodChannel.invokeMethod("upgradeState", info);
-
-                                } else {
+                                YcProductPluginWatchFaceCache.put(context, macAddress, dialID, dialVersion, hash);
 
-                                    HashMap map = new HashMap();
-                                    map.put("code", YcProductPluginFlutterType.PluginState.succeed);
-                                    map.put("data", "");
-                                    result.success(map);
-                                }
+                                HashMap map = new HashMap();
+                                map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                                map.put("data", "");
+                                result.success(map);
 
                             } else {
 
@@ -226,10 +416,16 @@ public class YcProductPluginWatchFace {
 
         } catch (Exception e) {
 
-            HashMap map = new HashMap();
-            map.put("code", YcProductPluginFlutterType.PluginState.failed);
-            map.put("data", e.getMessage());
-            result.success(map);
+            listener.onFinish();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    HashMap map = new HashMap();
+                    map.put("code", YcProductPluginFlutterType.PluginState.failed);
+                    map.put("data", e.getMessage());
+                    result.success(map);
+                }
+            });
         }
 
     }
@@ -237,62 +433,25 @@ public class YcProductPluginWatchFace {
     /**
      * 查询文件内容
      *
-     * @param arguments
+     * @param arguments filePath 或 [filePath, headerOnly]
      * @param result
      */
     public static void queryDeviceCustomWatchFaceInfo(Object arguments, @NonNull MethodChannel.Result result) {
 
-        String filePath = (String) arguments;
-
-        int size = 0;
-        int width = 0;
-        int height = 0;
-        int radius = 0;
-
-        int thumbnailSize = 0;
-        int thumbnailWidth = 0;
-        int thumbnailHeight = 0;
-        int thumbnailRadius = 0;
-
         try {
 
-            FileInputStream inputStream = new FileInputStream(new File(filePath));
-            byte[] buffer = new byte[1024];
-            int len = 0;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            while ((len = inputStream.read(buffer)) != -1) {
-                bos.write(buffer, 0, len);
+            String filePath;
+            boolean isHeaderOnly = false;
+            if (arguments instanceof ArrayList) {
+                ArrayList list = (ArrayList) arguments;
+                filePath = (String) list.get(0);
+                isHeaderOnly = list.size() > 1 && Boolean.TRUE.equals(list.get(1));
+            } else {
+                filePath = (String) arguments;
             }
 
-            bos.flush();
-            byte[] bins = bos.toByteArray();
-
-            ImageBean bgImageBean = AITools.getInstance().getBmpSize(bins);
-            ImageBean cpImageBean = AITools.getInstance().getCompressionBmpSize(bins);
-
-            size = bgImageBean.size;
-            width = bgImageBean.width;
-            height = bgImageBean.height;
-            radius = bgImageBean.radius;
-
-            thumbnailSize = cpImageBean.size;
-            thumbnailWidth = cpImageBean.width;
-            ;
-            thumbnailHeight = cpImageBean.height;
-            ;
-            thumbnailRadius = cpImageBean.radius;
-
-            HashMap info = new HashMap();
-            info.put("size", size);
-            info.put("width", width);
-            info.put("height", height);
-            info.put("radius", radius);
-
-            info.put("thumbnailSize", thumbnailSize);
-            info.put("thumbnailWidth", thumbnailWidth);
-            info.put("thumbnailHeight", thumbnailHeight);
-            info.put("thumbnailRadius", thumbnailRadius);
-
+            // headerOnly 时 BMP/PNG 的尺寸取自文件头, 其他字段由SDK解析
+            HashMap info = YcProductPluginDialHeader.inspect(filePath, isHeaderOnly);
 
             HashMap map = new HashMap();
             map.put("code", YcProductPluginFlutterType.PluginState.succeed);
@@ -303,15 +462,15 @@ public class YcProductPluginWatchFace {
 
 
             HashMap info = new HashMap();
-            info.put("size", size);
-            info.put("width", width);
-            info.put("height", height);
-            info.put("radius", radius);
+            info.put("size", 0);
+            info.put("width", 0);
+            info.put("height", 0);
+            info.put("radius", 0);
 
-            info.put("thumbnailSize", thumbnailSize);
-            info.put("thumbnailWidth", thumbnailWidth);
-            info.put("thumbnailHeight", thumbnailHeight);
-            info.put("thumbnailRadius", thumbnailRadius);
+            info.put("thumbnailSize", 0);
+            info.put("thumbnailWidth", 0);
+            info.put("thumbnailHeight", 0);
+            info.put("thumbnailRadius", 0);
 
 
             HashMap map = new HashMap();
@@ -352,13 +511,67 @@ public class YcProductPluginWatchFace {
         int greenColor = (int) list.get(7);
         int blueColor = (int) list.get(8);
 
-        // 将颜色分量转换为RGB565格式
-        int red565 = ((redColor & 0xFF) >> 3) & 0x1F;
-        int green565 = ((greenColor & 0xFF) >> 2) & 0x3F;
-        int blue565 = ((blueColor & 0xFF) >> 3) & 0x1F;
+        // 背景抖动方式, 默认直接截断 (与之前的输出相同)
+        int ditherMode = list.size() > 9 && list.get(9) != null ?
+                (int) list.get(9) : YcProductPluginRGB565Quantizer.modeTruncate;
 
-        int rgb565 = (red565 << 11) | (green565 << 5) | blue565;
+        // 将颜色转换为RGB565格式: 截断时与之前完全相同, 抖动时四舍五入
+        int color = Color.rgb(redColor & 0xFF, greenColor & 0xFF, blueColor & 0xFF);
 
+        if (ditherMode == YcProductPluginRGB565Quantizer.modeTruncate) {
+            installCustomWatchFace(context, methodChannel, handler, dialID, filePath,
+                    backgroundPath, thumbnailPath, timeX, timeY,
+                    YcProductPluginRGB565Quantizer.truncateToRGB565(color), null, result);
+            return;
+        }
+
+        int rgb565 = YcProductPluginRGB565Quantizer.toRGB565(color);
+
+        // 背景在传输前量化到RGB565, 不占用蓝牙传输时间
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                String dialBackgroundPath = backgroundPath;
+                File quantizedFile = null;
+                try {
+                    // 每次安装使用单独的临时文件, 安装结束后删除
+                    quantizedFile = File.createTempFile("custom_dial_background", ".png", context.getCacheDir());
+                    if (YcProductPluginBitmapManager.quantizeTo565(backgroundPath, quantizedFile.getAbsolutePath(), ditherMode)) {
+                        dialBackgroundPath = quantizedFile.getAbsolutePath();
+                    } else {
+                        quantizedFile.delete();
+                        quantizedFile = null;
+                    }
+                } catch (IOException e) {
+                    Log.e("installCustomWatchFace", "quantize: " + e.getMessage());
+                    quantizedFile = null;
+                }
+
+                installCustomWatchFace(context, methodChannel, handler, dialID, filePath,
+                        dialBackgroundPath, thumbnailPath, timeX, timeY, rgb565, quantizedFile, result);
+            }
+        }).start();
+    }
+
+    private static void installCustomWatchFace(
+            Context context,
+            MethodChannel methodChannel,
+            Handler handler,
+            int dialID,
+            String filePath,
+            String backgroundPath,
+            String thumbnailPath,
+            int timeX,
+            int timeY,
+            int rgb565,
+            File temporaryFile,
+            @NonNull MethodChannel.Result result) {
+
+        // 表盘由SDK生成, 传输大小未知
+        YcProductPluginProgressReporter reporter = new YcProductPluginProgressReporter(
+                methodChannel, handler, "upgradeState",
+                YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace, 0);
 
         // 先删除表盘
         YCBTClient.watchDialDelete(dialID, new BleDataResponse() {
@@ -383,20 +596,23 @@ public class YcProductPluginWatchFace {
                             @Override
                             public void onDialProgress(int i, float progress) {
 
+                                // 进度合并后发送, 不逐次切换到主线程
+                                if (0 == i) {
+                                    reporter.report(progress * 0.01f);
+                                    return;
+                                }
+                                reporter.finish();
+
+                                if (temporaryFile != null) {
+                                    temporaryFile.delete();
+                                }
+
                                 handler.post(new Runnable() {
                                     @Override
                                     public void run() {
 
 
-                                        if (0 == i) {
-                                            HashMap info = new HashMap();
-                                            info.put("code", YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace);
-                                            info.put("progress", String.format("%.2f", progress * 0.01));
-                                            info.put("error", "");
-
-                                            methodChannel.invokeMethod("upgradeState", info);
-
-                                        } else if (1 == i) {
+                                        if (1 == i) {
 
                                             HashMap info = new HashMap();
                                             info.put("code", YcProductPluginFlutterType.PluginState.succeed);
@@ -506,24 +722,31 @@ public class YcProductPluginWatchFace {
 
         try {
 
-            FileInputStream inputStream = new FileInputStream(new File(filePath));
-            byte[] buffer = new byte[1024];
-            int len = 0;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            while ((len = inputStream.read(buffer)) != -1) {
-                bos.write(buffer, 0, len);
-            }
-
-            bos.flush();
-
-            bos.toByteArray();
+            // SDK按路径读取, 这里只检查文件可读
+            long fileSize = YcProductPluginFileLoader.checkFile(filePath).length();
 
-            HashMap info = new HashMap();
+            YcProductPluginProgressReporter reporter = new YcProductPluginProgressReporter(
+                    methodChannel, handler, "upgradeState",
+                    YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace,
+                    fileSize);
 
             YCBTClient.jlWatchDialDownload(filePath, false, new BleDataResponse() {
                 @Override
                 public void onDataResponse(int i, float v, HashMap hashMap) {
 
+                    // 进度在回调线程合并后发送, 不逐次切换到主线程
+                    if (0 == i && hashMap != null &&
+                            (int) hashMap.get("dataType") == Constants.DATATYPE.WatchDialProgress) {
+                        float progress = (float) hashMap.get("progress");
+                        reporter.report(progress * 0.01f);
+                        return;
+                    }
+
+                    if (0 == i && hashMap != null) {
+                        reporter.report(1);
+                    }
+                    reporter.finish();
+
                     // 主线程执行
                     handler.post(new Runnable() {
                         @Override
@@ -531,25 +754,10 @@ public class YcProductPluginWatchFace {
 
                             if (0 == i && hashMap != null) {
 
-                                // 获取进度
-                                int type = (int) hashMap.get("dataType");
-                                if (type == Constants.DATATYPE.WatchDialProgress) {
-
-                                    float progress = (float) hashMap.get("progress");
-                                    info.clear();
-                                    info.put("code", YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace);
-                                    info.put("progress", String.format("%.2f", progress * 0.01));
-                                    info.put("error", "");
-
-                                    methodChannel.invokeMethod("upgradeState", info);
-
-                                } else {
-
-                                    HashMap map = new HashMap();
-                                    map.put("code", YcProductPluginFlutterType.PluginState.succeed);
-                                    map.put("data", "");
-                                    result.success(map);
-                                }
+                                HashMap map = new HashMap();
+                                map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+                                map.put("data", "");
+                                result.success(map);
 
                             } else {
 
@@ -661,11 +869,37 @@ public class YcProductPluginWatchFace {
         int timeLocation = (int) list.get(9);
         int timeTextColor = (int) list.get(10);
 
-//        Bitmap bitmap = BitmapFactory.decodeFile(backgroundPath);
-//        int width = bitmap.getWidth();
-//        int height = bitmap.getHeight();
-//        Log.d("setDialCustomize","width="+width+" height="+height);
+        // 按屏幕尺寸预处理背景图和缩略图 (有缓存时直接使用), 圆角由SDK处理, 解码和缩放不在主线程进行
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                String dialBackgroundPath = YcProductPluginWatchFaceRender.render(
+                        context, backgroundPath, backgroundImageWidth, backgroundImageHeight);
+                String dialThumbnailPath = YcProductPluginWatchFaceRender.render(
+                        context, thumbnailPath, thumbnailWidth, thumbnailHeight);
+
+                installJieLiCustomWatchFace(context, methodChannel, handler, watchName,
+                        dialBackgroundPath, dialThumbnailPath, timeLocation, timeTextColor, result);
+            }
+        }).start();
+    }
 
+    private static void installJieLiCustomWatchFace(
+            Context context,
+            MethodChannel methodChannel,
+            Handler handler,
+            String watchName,
+            String backgroundPath,
+            String thumbnailPath,
+            int timeLocation,
+            int timeTextColor,
+            @NonNull MethodChannel.Result result) {
+
+        // 表盘由SDK生成, 传输大小未知
+        YcProductPluginProgressReporter reporter = new YcProductPluginProgressReporter(
+                methodChannel, handler, "upgradeState",
+                YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace, 0);
 
         YCBTClient.setDialCustomize(
                 context,
@@ -684,15 +918,12 @@ public class YcProductPluginWatchFace {
 
 
                         if (0 == i) {
-                            HashMap info = new HashMap();
-                            info.put("code", YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace);
-                            info.put("progress", String.format("%.2f", progress * 0.01));
-                            info.put("error", "");
-
-                            methodChannel.invokeMethod("upgradeState", info);
+                            reporter.report(progress * 0.01f);
 
                         } else if (1 == i) {
 
+                            reporter.finish();
+
 //                            YCBTClient.jlWatchDialSetCurrent("/" + watchName, new BleDataResponse() {
 //                                @Override
 //                                public void onDataResponse(int i, float v, HashMap hashMap) {
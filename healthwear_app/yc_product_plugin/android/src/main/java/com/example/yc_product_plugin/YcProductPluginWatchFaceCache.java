@@ -0,0 +1,144 @@
+package com.example.yc_product_plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+/**
+ * 已安装表盘记录 (按设备)
+ * <p>
+ * 记录每台设备上每个表盘安装时的文件哈希和版本, 再次安装同一个表盘时
+ * 如果设备上仍然存在就直接切换, 不再重新传输.
+ */
+public class YcProductPluginWatchFaceCache {
+
+    private static final String preferencesName = "yc_watch_face_cache";
+
+    // 文件哈希 (路径|大小|修改时间 -> SHA-256), 同一文件不重复计算
+    private static final HashMap<String, String> hashes = new HashMap<>();
+
+    /**
+     * 文件内容的SHA-256, 按路径, 大小和修改时间缓存. 未缓存时读取整个文件, 不要在主线程调用
+     *
+     * @param path 文件路径
+     */
+    static String hashFile(String path) throws IOException {
+
+        File file = YcProductPluginFileLoader.checkFile(path);
+        String fileKey = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+        synchronized (hashes) {
+            String hash = hashes.get(fileKey);
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        String hash = sha256(YcProductPluginFileLoader.map(path));
+        synchronized (hashes) {
+            hashes.put(fileKey, hash);
+        }
+        return hash;
+    }
+
+    static String sha256(ByteBuffer buffer) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer.duplicate());
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            builder.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return builder.toString();
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(preferencesName, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 表盘是否按相同内容安装过
+     *
+     * @param macAddress 设备
+     * @param dialID     表盘ID
+     * @param version    表盘版本
+     * @param hash       文件哈希
+     */
+    static synchronized boolean isInstalled(Context context, String macAddress, int dialID, int version, String hash) {
+
+        if (context == null || macAddress == null || hash == null) {
+            return false;
+        }
+
+        try {
+            JSONObject device = new JSONObject(preferences(context).getString(macAddress, "{}"));
+            JSONObject dial = device.optJSONObject(String.valueOf(dialID));
+            return dial != null &&
+                    dial.optInt("version", -1) == version &&
+                    hash.equals(dial.optString("hash"));
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 记录安装成功的表盘
+     */
+    static synchronized void put(Context context, String macAddress, int dialID, int version, String hash) {
+
+        if (context == null || macAddress == null || hash == null) {
+            return;
+        }
+
+        try {
+            SharedPreferences preferences = preferences(context);
+            JSONObject device = new JSONObject(preferences.getString(macAddress, "{}"));
+
+            JSONObject dial = new JSONObject();
+            dial.put("version", version);
+            dial.put("hash", hash);
+            dial.put("installTime", System.currentTimeMillis());
+            device.put(String.valueOf(dialID), dial);
+
+            preferences.edit().putString(macAddress, device.toString()).apply();
+        } catch (JSONException e) {
+            Log.e("WatchFaceCache", "put: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 表盘已删除
+     */
+    static synchronized void remove(Context context, String macAddress, int dialID) {
+
+        if (context == null || macAddress == null) {
+            return;
+        }
+
+        try {
+            SharedPreferences preferences = preferences(context);
+            JSONObject device = new JSONObject(preferences.getString(macAddress, "{}"));
+            device.remove(String.valueOf(dialID));
+            preferences.edit().putString(macAddress, device.toString()).apply();
+        } catch (JSONException e) {
+            Log.e("WatchFaceCache", "remove: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.example.yc_product_plugin;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yucheng.ycbtsdk.YCBTClient;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * 批量安装表盘队列
+ * <p>
+ * 队列保存在文件中, 在同一个连接上依次安装, 每个表盘完成或失败后写入检查点.
+ * 单个表盘失败时标记为失败并继续安装其余表盘; 之后调用 resumeWatchFaceQueue 重新安装失败和未完成的表盘.
+ * SDK没有从指定偏移继续传输的接口, 所以继续时中断的表盘从头传输, 已完成的表盘不再传输.
+ */
+public class YcProductPluginWatchFaceQueue {
+
+    // 表盘状态
+    static final int statePending = 0;
+    static final int stateInstalled = 1;
+    static final int stateFailed = 2;
+
+    private static final String queueFileName = "watch_face_queue.json";
+
+    // 以下状态只在主线程访问
+    private static JSONObject queue;
+    private static boolean isRunning = false;
+    private static boolean isCancelled = false;
+    private static YcProductPluginProgressReporter reporter;
+    private static final ArrayList<MethodChannel.Result> waitingResults = new ArrayList<>();
+
+
+    /**
+     * 加入队列并开始安装
+     *
+     * @param arguments [[isEnable, dialID, blockCount, dialVersion, filePath], ...]
+     * @param result    队列结束时返回, 有失败的表盘时 code 为 failed
+     */
+    public static void installWatchFaces(Context context, MethodChannel methodChannel, Handler handler, Object arguments, @NonNull MethodChannel.Result result) {
+
+        ArrayList list = (ArrayList) arguments;
+        if (list == null || list.isEmpty()) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", "");
+            result.success(map);
+            return;
+        }
+
+        String macAddress = currentMacAddress();
+
+        try {
+
+            JSONObject current = load(context);
+
+            // 其他设备留下的队列不再继续
+            if (!isRunning && !macAddress.equals(current.optString("macAddress"))) {
+                current = newQueue(macAddress);
+            }
+
+            JSONArray items = current.getJSONArray("items");
+            for (Object element : list) {
+
+                ArrayList dial = (ArrayList) element;
+                if (dial.size() < 5) {
+                    throw new IllegalArgumentException("Invalid dial: " + dial);
+                }
+
+                int dialID = (int) dial.get(1);
+                int dialVersion = (int) dial.get(3);
+                JSONObject item = findItem(items, dialID, dialVersion);
+                if (item == null) {
+                    item = new JSONObject();
+                    items.put(item);
+                }
+                item.put("isEnable", (Boolean) dial.get(0));
+                item.put("dialID", dialID);
+                item.put("blockCount", (int) dial.get(2));
+                item.put("dialVersion", dialVersion);
+                item.put("filePath", (String) dial.get(4));
+                item.put("state", statePending);
+                item.put("error", "");
+            }
+
+            queue = current;
+            save(context);
+
+        } catch (Exception e) {
+
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", e.getMessage());
+            result.success(map);
+            return;
+        }
+
+        waitingResults.add(result);
+        if (!isRunning) {
+            start(context, methodChannel, handler);
+        }
+    }
+
+    /**
+     * 重连后继续上次的队列
+     */
+    public static void resumeWatchFaceQueue(Context context, MethodChannel methodChannel, Handler handler, @NonNull MethodChannel.Result result) {
+
+        JSONObject current = load(context);
+        JSONArray items = current.optJSONArray("items");
+
+        if (!currentMacAddress().equals(current.optString("macAddress"))) {
+            HashMap map = new HashMap();
+            map.put("code", YcProductPluginFlutterType.PluginState.failed);
+            map.put("data", summary(current));
+            result.success(map);
+            return;
+        }
+
+        // 失败的表盘重新排队
+        for (int index = 0; items != null && index < items.length(); index++) {
+            JSONObject item = items.optJSONObject(index);
+            if (item.optInt("state") == stateFailed) {
+                try {
+                    item.put("state", statePending);
+                    item.put("error", "");
+                } catch (JSONException e) {
+                    Log.e("WatchFaceQueue", "resume: " + e.getMessage());
+                }
+            }
+        }
+        save(context);
+
+        waitingResults.add(result);
+        if (!isRunning) {
+            start(context, methodChannel, handler);
+        }
+    }
+
+    /**
+     * 查询队列状态
+     */
+    public static void queryWatchFaceQueue(Context context, @NonNull MethodChannel.Result result) {
+
+        HashMap data = summary(load(context));
+        data.put("isRunning", isRunning);
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", data);
+        result.success(map);
+    }
+
+    /**
+     * 取消队列, 正在传输的表盘完成后停止
+     */
+    public static void cancelWatchFaceQueue(Context context, @NonNull MethodChannel.Result result) {
+
+        if (isRunning) {
+            isCancelled = true;
+        } else {
+            queue = newQueue(currentMacAddress());
+            new File(context.getFilesDir(), queueFileName).delete();
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", YcProductPluginFlutterType.PluginState.succeed);
+        map.put("data", "");
+        result.success(map);
+    }
+
+    private static void start(Context context, MethodChannel methodChannel, Handler handler) {
+
+        isCancelled = false;
+        isRunning = true;
+
+        // 总大小: 队列中所有表盘文件
+        long totalBytes = 0;
+        JSONArray items = queue.optJSONArray("items");
+        for (int index = 0; index < items.length(); index++) {
+            totalBytes += new File(items.optJSONObject(index).optString("filePath")).length();
+        }
+        reporter = new YcProductPluginProgressReporter(
+                methodChannel, handler, "upgradeState",
+                YcProductPluginFlutterType.DeviceUpdateState.installingWatchFace,
+                totalBytes);
+
+        runNext(context, methodChannel, handler);
+    }
+
+    /**
+     * 安装下一个未完成的表盘
+     */
+    private static void runNext(Context context, MethodChannel methodChannel, Handler handler) {
+
+        JSONArray items = queue.optJSONArray("items");
+
+        if (isCancelled) {
+            queue = newQueue(queue.optString("macAddress"));
+            new File(context.getFilesDir(), queueFileName).delete();
+            finish(YcProductPluginFlutterType.PluginState.failed, "cancelled");
+            return;
+        }
+
+        // 总进度按块数加权
+        int totalBlocks = 0;
+        int installedBlocks = 0;
+        JSONObject next = null;
+        int nextIndex = -1;
+        for (int index = 0; index < items.length(); index++) {
+            JSONObject item = items.optJSONObject(index);
+            int blocks = Math.max(1, item.optInt("blockCount"));
+            totalBlocks += blocks;
+            if (item.optInt("state") == stateInstalled) {
+                installedBlocks += blocks;
+            } else if (next == null && item.optInt("state") == statePending) {
+                next = item;
+                nextIndex = index;
+            }
+        }
+
+        if (next == null) {
+            finish(summaryCount(items, stateFailed) > 0 ?
+                    YcProductPluginFlutterType.PluginState.failed :
+                    YcProductPluginFlutterType.PluginState.succeed, null);
+            if (summaryCount(items, stateInstalled) == items.length()) {
+                queue = newQueue(queue.optString("macAddress"));
+                new File(context.getFilesDir(), queueFileName).delete();
+            }
+            return;
+        }
+
+        JSONObject item = next;
+        int index = nextIndex;
+        int count = items.length();
+        int blockCount = Math.max(1, item.optInt("blockCount"));
+        float doneBlocks = installedBlocks;
+        float allBlocks = totalBlocks;
+
+        reporter.setExtra("index", index);
+        reporter.setExtra("count", count);
+        reporter.setExtra("dialID", item.optInt("dialID"));
+
+        YcProductPluginWatchFace.installWatchFace(
+                context,
+                handler,
+                item.optBoolean("isEnable"),
+                item.optInt("dialID"),
+                item.optInt("blockCount"),
+                item.optInt("dialVersion"),
+                item.optString("filePath"),
+                new YcProductPluginWatchFace.InstallProgressListener() {
+                    @Override
+                    public void onProgress(float progress) {
+                        reporter.report((doneBlocks + progress * blockCount) / allBlocks);
+                    }
+
+                    @Override
+                    public void onFinish() {
+                        // 队列的进度在整个队列结束时 finish
+                    }
+                },
+                new MethodChannel.Result() {
+                    @Override
+                    public void success(@Nullable Object object) {
+
+                        HashMap map = (HashMap) object;
+                        if (map != null && YcProductPluginFlutterType.PluginState.succeed == (int) map.get("code")) {
+                            putQuietly(item, "state", stateInstalled);
+                            save(context);
+                            runNext(context, methodChannel, handler);
+                        } else {
+                            onFailed(context, methodChannel, handler, item, map == null ? "" : String.valueOf(map.get("data")));
+                        }
+                    }
+
+                    @Override
+                    public void error(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+                        onFailed(context, methodChannel, handler, item, errorCode);
+                    }
+
+                    @Override
+                    public void notImplemented() {
+                        onFailed(context, methodChannel, handler, item, "notImplemented");
+                    }
+                });
+    }
+
+    /**
+     * 表盘安装失败, 标记后继续下一个表盘, 失败的表盘由 resumeWatchFaceQueue 重新安装
+     */
+    private static void onFailed(Context context, MethodChannel methodChannel, Handler handler, JSONObject item, String error) {
+        putQuietly(item, "state", stateFailed);
+        putQuietly(item, "error", error);
+        save(context);
+        runNext(context, methodChannel, handler);
+    }
+
+    private static void finish(int code, String error) {
+
+        isRunning = false;
+        if (reporter != null) {
+            reporter.finish();
+        }
+
+        HashMap data = summary(queue);
+        if (error != null) {
+            data.put("error", error);
+        }
+
+        HashMap map = new HashMap();
+        map.put("code", code);
+        map.put("data", data);
+
+        ArrayList<MethodChannel.Result> results = new ArrayList<>(waitingResults);
+        waitingResults.clear();
+        for (MethodChannel.Result result : results) {
+            result.success(map);
+        }
+    }
+
+    private static HashMap summary(JSONObject current) {
+
+        JSONArray items = current.optJSONArray("items");
+        ArrayList dials = new ArrayList();
+
+        for (int index = 0; items != null && index < items.length(); index++) {
+            JSONObject item = items.optJSONObject(index);
+            HashMap dial = new HashMap();
+            dial.put("dialID", item.optInt("dialID"));
+            dial.put("version", item.optInt("dialVersion"));
+            dial.put("state", item.optInt("state"));
+            dial.put("blockCount", item.optInt("blockCount"));
+            dial.put("error", item.optString("error"));
+            dials.add(dial);
+        }
+
+        HashMap data = new HashMap();
+        data.put("count", dials.size());
+        data.put("installed", summaryCount(items, stateInstalled));
+        data.put("pending", summaryCount(items, statePending));
+        data.put("failed", summaryCount(items, stateFailed));
+        data.put("dials", dials);
+        return data;
+    }
+
+    private static int summaryCount(JSONArray items, int state) {
+        int count = 0;
+        for (int index = 0; items != null && index < items.length(); index++) {
+            if (items.optJSONObject(index).optInt("state") == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static JSONObject findItem(JSONArray items, int dialID, int dialVersion) {
+        for (int index = 0; index < items.length(); index++) {
+            JSONObject item = items.optJSONObject(index);
+            if (item.optInt("dialID") == dialID && item.optInt("dialVersion") == dialVersion) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static String currentMacAddress() {
+        String macAddress = YCBTClient.getBindDeviceMac();
+        return macAddress == null ? "" : macAddress;
+    }
+
+    private static JSONObject newQueue(String macAddress) {
+        JSONObject current = new JSONObject();
+        putQuietly(current, "macAddress", macAddress);
+        putQuietly(current, "items", new JSONArray());
+        return current;
+    }
+
+    private static void putQuietly(JSONObject object, String key, Object value) {
+        try {
+            object.put(key, value);
+        } catch (JSONException e) {
+            Log.e("WatchFaceQueue", "put: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取队列 (内存中没有时从文件恢复)
+     */
+    private static JSONObject load(Context context) {
+
+        if (queue != null) {
+            return queue;
+        }
+
+        File file = new File(context.getFilesDir(), queueFileName);
+        try {
+            queue = new JSONObject(new String(YcProductPluginFileLoader.readFully(file.getAbsolutePath()), StandardCharsets.UTF_8));
+            if (queue.optJSONArray("items") == null) {
+                queue.put("items", new JSONArray());
+            }
+        } catch (Exception e) {
+            queue = newQueue(currentMacAddress());
+        }
+        return queue;
+    }
+
+    /**
+     * 写入检查点 (先写临时文件再替换)
+     */
+    private static void save(Context context) {
+
+        File file = new File(context.getFilesDir(), queueFileName);
+        File temp = new File(context.getFilesDir(), queueFileName + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temp)) {
+            outputStream.write(queue.toString().getBytes(StandardCharsets.UTF_8));
+            outputStream.getFD().sync();
+        } catch (Exception e) {
+            Log.e("WatchFaceQueue", "save: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e("WatchFaceQueue", "save: rename failed");
+        }
+    }
+}
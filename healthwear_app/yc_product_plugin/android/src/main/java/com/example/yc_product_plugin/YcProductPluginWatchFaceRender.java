@@ -0,0 +1,207 @@
+package com.example.yc_product_plugin;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 自定义表盘图片预处理和磁盘缓存
+ * <p>
+ * 背景图和缩略图按设备屏幕尺寸保持宽高比缩放并居中裁剪 (圆角仍由SDK处理),
+ * 结果按 原图哈希 + 宽 + 高 缓存在 cacheDir/watch_face_render/ 下, 最久未使用的先删除.
+ * 缓存文件沿用原文件名, 扩展名为 .png (内容为PNG), SDK按文件名生成设备上的路径.
+ */
+public class YcProductPluginWatchFaceRender {
+
+    static final String cacheDirName = "watch_face_render";
+
+    // 磁盘缓存上限
+    static final long maxCacheBytes = 32L * 1024 * 1024;
+
+    /**
+     * 按屏幕参数生成图片, 已缓存时直接返回
+     *
+     * @param sourcePath 原图
+     * @param width      输出宽度
+     * @param height     输出高度
+     * @return 处理后的文件, 失败时返回原图路径
+     */
+    public static String render(Context context, String sourcePath, int width, int height) {
+
+        if (width <= 0 || height <= 0) {
+            return sourcePath;
+        }
+
+        try {
+
+            File source = YcProductPluginFileLoader.checkFile(sourcePath);
+            String key = YcProductPluginWatchFaceCache.hashFile(source.getAbsolutePath()) + "_" + width + "x" + height;
+
+            String name = source.getName();
+            int dot = name.lastIndexOf('.');
+            name = (dot > 0 ? name.substring(0, dot) : name) + ".png";
+
+            File directory = new File(new File(context.getCacheDir(), cacheDirName), key);
+            File target = new File(directory, name);
+
+            if (target.isFile() && target.length() > 0) {
+                // 更新使用时间
+                directory.setLastModified(System.currentTimeMillis());
+                return target.getAbsolutePath();
+            }
+
+            Bitmap bitmap = decode(sourcePath, width, height);
+            if (bitmap == null) {
+                return sourcePath;
+            }
+
+            Bitmap rendered = centerCrop(bitmap, width, height);
+            bitmap.recycle();
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                YcProductPluginBitmapManager.release(rendered);
+                return sourcePath;
+            }
+
+            File temp = new File(directory, name + ".tmp");
+            boolean isSaved;
+            try (FileOutputStream outputStream = new FileOutputStream(temp)) {
+                isSaved = rendered.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+            } finally {
+                YcProductPluginBitmapManager.release(rendered);
+            }
+
+            if (!isSaved || !temp.renameTo(target)) {
+                temp.delete();
+                return sourcePath;
+            }
+
+            trim(context);
+            return target.getAbsolutePath();
+
+        } catch (Exception e) {
+            Log.e("WatchFaceRender", "render: " + e.getMessage());
+            return sourcePath;
+        }
+    }
+
+    /**
+     * 按目标尺寸采样解码, 不解码比需要大很多的图片
+     */
+    private static Bitmap decode(String path, int width, int height) {
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    /**
+     * 保持宽高比缩放到输出尺寸, 裁掉超出的部分 (居中)
+     * <p>
+     * 输出位图来自 YcProductPluginBitmapPool, 用完调用 YcProductPluginBitmapManager.release
+     */
+    private static Bitmap centerCrop(Bitmap bitmap, int width, int height) {
+
+        int sourceWidth = bitmap.getWidth();
+        int sourceHeight = bitmap.getHeight();
+
+        // 原图中和输出宽高比相同的最大区域
+        int cropWidth = sourceWidth;
+        int cropHeight = sourceHeight;
+        if ((long) sourceWidth * height > (long) sourceHeight * width) {
+            cropWidth = (int) Math.round((double) sourceHeight * width / height);
+        } else {
+            cropHeight = (int) Math.round((double) sourceWidth * height / width);
+        }
+        int left = (sourceWidth - cropWidth) / 2;
+        int top = (sourceHeight - cropHeight) / 2;
+
+        Bitmap output = YcProductPluginBitmapPool.acquire(width, height);
+        Canvas canvas = new Canvas(output);
+        canvas.drawBitmap(bitmap,
+                new Rect(left, top, left + cropWidth, top + cropHeight),
+                new Rect(0, 0, width, height),
+                new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG));
+        return output;
+    }
+
+    /**
+     * 超过上限时删除最久未使用的缓存
+     */
+    private static synchronized void trim(Context context) {
+
+        File[] directories = new File(context.getCacheDir(), cacheDirName).listFiles();
+        if (directories == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File directory : directories) {
+            total += size(directory);
+        }
+        if (total <= maxCacheBytes) {
+            return;
+        }
+
+        Arrays.sort(directories, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        for (File directory : directories) {
+            if (total <= maxCacheBytes) {
+                break;
+            }
+            total -= size(directory);
+            delete(directory);
+        }
+    }
+
+    private static long size(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long total = 0;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File item : files) {
+                total += size(item);
+            }
+        }
+        return total;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File item : files) {
+                delete(item);
+            }
+        }
+        file.delete();
+    }
+}
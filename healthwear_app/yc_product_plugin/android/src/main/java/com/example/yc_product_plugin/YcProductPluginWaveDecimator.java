@@ -0,0 +1,293 @@
+package com.example.yc_product_plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 波形显示抽稀 (ECG / PPG)
+ * <p>
+ * 按每秒显示点数对实时波形做流式抽稀, 只作用于发送给Flutter的显示数据,
+ * 原始全分辨率数据不经过这里.
+ */
+public class YcProductPluginWaveDecimator {
+
+    /// 抽稀模式
+    static final int modeOff = 0;       // 不抽稀
+    static final int modeMinMax = 1;    // 最大最小值包络
+    static final int modeLTTB = 2;      // Largest-Triangle-Three-Buckets
+
+    // 全局显示配置, 由Flutter端设置
+    private static volatile int displayMode = modeOff;
+    private static volatile int displayPointsPerSecond = 0;
+
+    private int sampleRate;
+
+    // 当前配置快照, 配置变化时重置状态
+    private int mode = modeOff;
+    private int pointsPerSecond = 0;
+
+    private double bucketLength = 0;
+    private double bucketEnd = 0;
+    private long sampleIndex = 0;
+
+    // 当前桶
+    private Object[] bucketItems = new Object[0];
+    private double[] bucketValues = new double[0];
+    private long[] bucketIndexes = new long[0];
+    private int bucketCount = 0;
+
+    // LTTB: 上一个完整桶 (等待下一个桶的平均值)
+    private Object[] pendingItems = new Object[0];
+    private double[] pendingValues = new double[0];
+    private long[] pendingIndexes = new long[0];
+    private int pendingCount = 0;
+
+    // LTTB: 上一个选中的点
+    private boolean hasSelected = false;
+    private double selectedValue = 0;
+    private long selectedIndex = 0;
+
+    /**
+     * @param sampleRate 输入波形采样率 (Hz)
+     */
+    public YcProductPluginWaveDecimator(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 设置显示抽稀
+     *
+     * @param mode            模式 0 关闭 1 最大最小值 2 LTTB
+     * @param pointsPerSecond 每秒显示点数
+     */
+    public static void setDisplayConfig(int mode, int pointsPerSecond) {
+        if (mode < modeOff || mode > modeLTTB || pointsPerSecond <= 0) {
+            mode = modeOff;
+            pointsPerSecond = 0;
+        }
+        displayPointsPerSecond = pointsPerSecond;
+        displayMode = mode;
+    }
+
+    public synchronized int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 修改输入采样率, 同时重置流状态 (可以和 process 在不同线程调用)
+     */
+    public synchronized void setSampleRate(int sampleRate) {
+        if (sampleRate <= 0 || sampleRate == this.sampleRate) {
+            return;
+        }
+        this.sampleRate = sampleRate;
+        // 按新的采样率重新计算桶长度
+        mode = modeOff;
+        pointsPerSecond = 0;
+        reset();
+    }
+
+    public static boolean isEnabled() {
+        return displayMode != modeOff;
+    }
+
+    /**
+     * 重置流状态, 新的测量开始时调用
+     */
+    public synchronized void reset() {
+        bucketCount = 0;
+        pendingCount = 0;
+        hasSelected = false;
+        sampleIndex = 0;
+        bucketEnd = bucketLength;
+    }
+
+    /**
+     * 处理一包数据, 返回需要显示的点 (保持原始元素类型)
+     *
+     * @param samples 一包原始数据
+     * @return 抽稀后的点, 关闭抽稀时原样返回
+     */
+    public synchronized List process(List samples) {
+
+        if (samples == null) {
+            return null;
+        }
+
+        applyConfig();
+
+        if (mode == modeOff) {
+            return samples;
+        }
+
+        ArrayList output = new ArrayList(Math.max(4, (int) (samples.size() * 2 / bucketLength) + 2));
+
+        for (int i = 0; i < samples.size(); i++) {
+            Object item = samples.get(i);
+            if (!(item instanceof Number)) {
+                continue;
+            }
+
+            bucketItems[bucketCount] = item;
+            bucketValues[bucketCount] = ((Number) item).doubleValue();
+            bucketIndexes[bucketCount] = sampleIndex;
+            bucketCount++;
+            sampleIndex++;
+
+            if (sampleIndex >= bucketEnd || bucketCount == bucketItems.length) {
+                bucketEnd += bucketLength;
+                if (mode == modeMinMax) {
+                    flushMinMax(output);
+                } else {
+                    flushLTTB(output);
+                }
+            }
+        }
+
+        return output;
+    }
+
+    private void applyConfig() {
+
+        int newMode = displayMode;
+        int newPoints = displayPointsPerSecond;
+
+        // 输出点数不低于采样率时无需抽稀
+        if (newMode != modeOff && (sampleRate <= 0 || newPoints >= sampleRate)) {
+            newMode = modeOff;
+        }
+
+        if (newMode == mode && newPoints == pointsPerSecond) {
+            return;
+        }
+
+        mode = newMode;
+        pointsPerSecond = newPoints;
+
+        if (mode == modeOff) {
+            bucketLength = 0;
+        } else if (mode == modeMinMax) {
+            // 每个桶输出最小值和最大值两个点
+            bucketLength = Math.max(2.0, sampleRate * 2.0 / pointsPerSecond);
+        } else {
+            bucketLength = Math.max(1.0, (double) sampleRate / pointsPerSecond);
+        }
+
+        int capacity = (int) Math.ceil(bucketLength) + 1;
+        bucketItems = new Object[capacity];
+        bucketValues = new double[capacity];
+        bucketIndexes = new long[capacity];
+        pendingItems = new Object[capacity];
+        pendingValues = new double[capacity];
+        pendingIndexes = new long[capacity];
+
+        reset();
+    }
+
+    /**
+     * 最大最小值包络, 按时间先后输出两个点
+     */
+    private void flushMinMax(List output) {
+
+        if (bucketCount == 0) {
+            return;
+        }
+
+        int min = 0;
+        int max = 0;
+        for (int i = 1; i < bucketCount; i++) {
+            if (bucketValues[i] < bucketValues[min]) {
+                min = i;
+            }
+            if (bucketValues[i] > bucketValues[max]) {
+                max = i;
+            }
+        }
+
+        if (min == max) {
+            output.add(bucketItems[min]);
+        } else if (min < max) {
+            output.add(bucketItems[min]);
+            output.add(bucketItems[max]);
+        } else {
+            output.add(bucketItems[max]);
+            output.add(bucketItems[min]);
+        }
+
+        clearBucket();
+    }
+
+    /**
+     * 流式LTTB, 当前桶完成后从上一个桶中选点 (延迟一个桶)
+     */
+    private void flushLTTB(List output) {
+
+        if (bucketCount == 0) {
+            return;
+        }
+
+        // 第一个点总是保留
+        if (!hasSelected) {
+            output.add(bucketItems[0]);
+            hasSelected = true;
+            selectedValue = bucketValues[0];
+            selectedIndex = bucketIndexes[0];
+        }
+
+        if (pendingCount > 0) {
+
+            // 下一个桶的平均点
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = 0; i < bucketCount; i++) {
+                avgX += bucketIndexes[i];
+                avgY += bucketValues[i];
+            }
+            avgX /= bucketCount;
+            avgY /= bucketCount;
+
+            int best = 0;
+            double bestArea = -1;
+            for (int i = 0; i < pendingCount; i++) {
+                double area = Math.abs(
+                        (selectedIndex - avgX) * (pendingValues[i] - selectedValue) -
+                                (selectedIndex - pendingIndexes[i]) * (avgY - selectedValue)
+                );
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+
+            if (pendingIndexes[best] != selectedIndex) {
+                output.add(pendingItems[best]);
+                selectedValue = pendingValues[best];
+                selectedIndex = pendingIndexes[best];
+            }
+
+            for (int i = 0; i < pendingCount; i++) {
+                pendingItems[i] = null;
+            }
+        }
+
+        // 当前桶成为待选桶
+        Object[] items = pendingItems;
+        double[] values = pendingValues;
+        long[] indexes = pendingIndexes;
+        pendingItems = bucketItems;
+        pendingValues = bucketValues;
+        pendingIndexes = bucketIndexes;
+        pendingCount = bucketCount;
+        bucketItems = items;
+        bucketValues = values;
+        bucketIndexes = indexes;
+        bucketCount = 0;
+    }
+
+    private void clearBucket() {
+        for (int i = 0; i < bucketCount; i++) {
+            bucketItems[i] = null;
+        }
+        bucketCount = 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.yc_product_plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the parallel BMP row conversion produces exactly the same bytes
+ * as the sequential conversion.
+ */
+public class YcProductPluginBmpEncoderTest {
+
+  private static final int[] formats = {
+      YcProductPluginBmpEncoder.format888, YcProductPluginBmpEncoder.format565
+  };
+
+  private static int[] randomPixels(int width, int height, long seed) {
+    Random random = new Random(seed);
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt();
+    }
+    return pixels;
+  }
+
+  private static byte[] sequential(int[] pixels, int width, int height, int bitCount) {
+    int stride = YcProductPluginBmpEncoder.rowStride(width, bitCount);
+    ByteBuffer out = ByteBuffer.allocateDirect(stride * height);
+    YcProductPluginBmpEncoder.convertRows(
+        pixels, width, height, bitCount, 0, height, out, new byte[stride]);
+    return toArray(out);
+  }
+
+  private static byte[] parallel(int[] pixels, int width, int height, int bitCount) {
+    int stride = YcProductPluginBmpEncoder.rowStride(width, bitCount);
+    ByteBuffer out = ByteBuffer.allocateDirect(stride * height);
+    YcProductPluginBmpEncoder.convertParallel(pixels, width, height, bitCount, out);
+    return toArray(out);
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.capacity()];
+    ByteBuffer copy = buffer.duplicate();
+    copy.clear();
+    copy.get(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void parallelMatchesSequential_forOddAndEvenSizes() {
+    int[][] sizes = {{1, 1}, {3, 7}, {5, 33}, {240, 280}, {361, 97}, {454, 454}, {466, 466}};
+    for (int bitCount : formats) {
+      for (int[] size : sizes) {
+        int[] pixels = randomPixels(size[0], size[1], size[0] * 31L + size[1]);
+        assertArrayEquals(
+            bitCount + "bit " + size[0] + "x" + size[1],
+            sequential(pixels, size[0], size[1], bitCount),
+            parallel(pixels, size[0], size[1], bitCount));
+      }
+    }
+  }
+
+  @Test
+  public void convertAboveThreshold_matchesSequential() {
+    int width = 720;
+    int height = 1 + YcProductPluginBmpEncoder.parallelThreshold / width;
+    int[] pixels = randomPixels(width, height, 7);
+    for (int bitCount : formats) {
+      int stride = YcProductPluginBmpEncoder.rowStride(width, bitCount);
+      ByteBuffer out = ByteBuffer.allocateDirect(stride * height);
+      YcProductPluginBmpEncoder.convert(pixels, width, height, bitCount, out, new byte[stride]);
+      assertArrayEquals(sequential(pixels, width, height, bitCount), toArray(out));
+    }
+  }
+
+  @Test
+  public void bottomRowIsWrittenFirst() {
+    int[] pixels = {0xFF112233, 0xFF445566};
+    byte[] bytes = sequential(pixels, 1, 2, YcProductPluginBmpEncoder.format888);
+    assertArrayEquals(new byte[] {0x66, 0x55, 0x44, 0, 0x33, 0x22, 0x11, 0}, bytes);
+
+    bytes = sequential(new int[] {0xFFFFFFFF}, 1, 1, YcProductPluginBmpEncoder.format565);
+    assertArrayEquals(new byte[] {(byte) 0xFF, (byte) 0xFF, 0, 0}, bytes);
+  }
+
+  @Test
+  public void headerDescribesBitFieldsFor565() {
+    ByteBuffer header = ByteBuffer.allocate(
+        YcProductPluginBmpEncoder.headerSize(YcProductPluginBmpEncoder.format565));
+    YcProductPluginBmpEncoder.writeHeader(header, 3, 2, YcProductPluginBmpEncoder.format565);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+
+    assertEquals(0, header.remaining());
+    assertEquals(66, header.getInt(10));
+    assertEquals(66 + 8 * 2, header.getInt(2));
+    assertEquals(16, header.getShort(28));
+    assertEquals(YcProductPluginBmpEncoder.compressionBitFields, header.getInt(30));
+    assertEquals(0xF800, header.getInt(54));
+    assertEquals(0x07E0, header.getInt(58));
+    assertEquals(0x001F, header.getInt(62));
+  }
+}
@@ -0,0 +1,152 @@
+package com.example.yc_product_plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import org.junit.Test;
+
+/**
+ * RGB565 quantizer correctness, plus a benchmark of the dithering modes against
+ * plain truncation on a watch-sized gradient.
+ */
+public class YcProductPluginRGB565QuantizerTest {
+
+  private static final int width = 466;
+  private static final int height = 466;
+
+  private static final int[] modes = {
+      YcProductPluginRGB565Quantizer.modeTruncate,
+      YcProductPluginRGB565Quantizer.modeOrdered,
+      YcProductPluginRGB565Quantizer.modeFloydSteinberg
+  };
+
+  /** Smooth diagonal gradient, the worst case for banding. */
+  private static int[] gradient() {
+    int[] pixels = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int red = x * 255 / (width - 1);
+        int green = y * 255 / (height - 1);
+        int blue = (x + y) * 255 / (width + height - 2);
+        pixels[y * width + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Mean absolute error of 8x8 block averages, i.e. the error the eye sees
+   * after spatial blurring. Truncation shows up as a constant bias and banding.
+   */
+  private static double blockError(int[] original, int[] quantized) {
+    int block = 8;
+    double total = 0;
+    int count = 0;
+    for (int by = 0; by + block <= height; by += block) {
+      for (int bx = 0; bx + block <= width; bx += block) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+          long a = 0;
+          long b = 0;
+          for (int y = by; y < by + block; y++) {
+            for (int x = bx; x < bx + block; x++) {
+              a += (original[y * width + x] >> shift) & 0xFF;
+              b += (quantized[y * width + x] >> shift) & 0xFF;
+            }
+          }
+          total += Math.abs(a - b) / (double) (block * block);
+          count++;
+        }
+      }
+    }
+    return total / count;
+  }
+
+  @Test
+  public void rgb565RoundTrip() {
+    for (int value = 0; value < 0x10000; value++) {
+      assertEquals(value, YcProductPluginRGB565Quantizer.toRGB565(
+          YcProductPluginRGB565Quantizer.toARGB(value)));
+    }
+    assertEquals(0xFFFF, YcProductPluginRGB565Quantizer.toRGB565(0xFFFFFFFF));
+    assertEquals(0, YcProductPluginRGB565Quantizer.toRGB565(0xFF000000));
+  }
+
+  @Test
+  public void truncationMatchesShiftingEachChannel() {
+    for (int value = 0; value < 0x1000000; value += 0x010305) {
+      int red = (value >> 16) & 0xFF;
+      int green = (value >> 8) & 0xFF;
+      int blue = value & 0xFF;
+      int expected = ((red >> 3) << 11) | ((green >> 2) << 5) | (blue >> 3);
+      assertEquals(expected, YcProductPluginRGB565Quantizer.truncateToRGB565(0xFF000000 | value));
+    }
+  }
+
+  @Test
+  public void everyModeProducesExact565Colors_andKeepsAlpha() {
+    for (int mode : modes) {
+      int[] pixels = gradient();
+      pixels[0] = 0x80FF8040;
+      YcProductPluginRGB565Quantizer.quantize(pixels, width, height, mode);
+      assertEquals(0x80, pixels[0] >>> 24);
+      for (int pixel : pixels) {
+        int rgb = pixel | 0xFF000000;
+        assertEquals(rgb, YcProductPluginRGB565Quantizer.toARGB(
+            YcProductPluginRGB565Quantizer.toRGB565(rgb)));
+      }
+    }
+  }
+
+  @Test
+  public void ditheringReducesVisibleError() {
+    int[] original = gradient();
+    double[] errors = new double[modes.length];
+    for (int i = 0; i < modes.length; i++) {
+      int[] pixels = original.clone();
+      YcProductPluginRGB565Quantizer.quantize(pixels, width, height, modes[i]);
+      errors[i] = blockError(original, pixels);
+    }
+    assertTrue(errors[1] < errors[0]);
+    assertTrue(errors[2] < errors[0]);
+  }
+
+  @Test
+  public void benchmarkAgainstTruncation() {
+    int[] original = gradient();
+    int[] pixels = new int[original.length];
+    int rounds = 20;
+    double[] millis = new double[modes.length];
+    double[] errors = new double[modes.length];
+
+    for (int m = 0; m < modes.length; m++) {
+      int mode = modes[m];
+      // warm up
+      for (int i = 0; i < 5; i++) {
+        System.arraycopy(original, 0, pixels, 0, pixels.length);
+        YcProductPluginRGB565Quantizer.quantize(pixels, width, height, mode);
+      }
+
+      long elapsed = 0;
+      for (int i = 0; i < rounds; i++) {
+        System.arraycopy(original, 0, pixels, 0, pixels.length);
+        long start = System.nanoTime();
+        YcProductPluginRGB565Quantizer.quantize(pixels, width, height, mode);
+        elapsed += System.nanoTime() - start;
+      }
+      millis[m] = elapsed / 1e6 / rounds;
+      errors[m] = blockError(original, pixels);
+
+      System.out.println(String.format(Locale.US,
+          "RGB565 mode=%d %dx%d: %.2f ms/image, block error %.3f",
+          mode, width, height, millis[m], errors[m]));
+    }
+
+    // dithering must pay for itself: clearly less visible error than truncation,
+    // at a per-image cost that is small next to the BLE transfer
+    for (int m = 1; m < modes.length; m++) {
+      assertTrue(errors[m] * 4 < errors[0]);
+      assertTrue(millis[m] < 100);
+    }
+  }
+}
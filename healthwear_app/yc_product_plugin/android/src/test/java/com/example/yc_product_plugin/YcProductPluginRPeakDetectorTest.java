@@ -0,0 +1,86 @@
+package com.example.yc_product_plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import org.junit.Test;
+
+/**
+ * Streaming R-peak detection shared by live PTT and offline analysis.
+ */
+public class YcProductPluginRPeakDetectorTest {
+
+  private static final int sampleRate = 250;
+
+  /** Flat baseline with a narrow triangular spike every {@code periodSamples}. */
+  private static float[] spikes(int count, int firstPeak, int periodSamples) {
+    float[] samples = new float[count];
+    for (int peak = firstPeak; peak < count; peak += periodSamples) {
+      for (int offset = -3; offset <= 3; offset++) {
+        int index = peak + offset;
+        if (index >= 0 && index < count) {
+          samples[index] = 1.0f - Math.abs(offset) * 0.3f;
+        }
+      }
+    }
+    return samples;
+  }
+
+  private static ArrayList<Long> stream(YcProductPluginRPeakDetector detector, float[] samples) {
+    ArrayList<Long> peaks = new ArrayList<>();
+    for (float sample : samples) {
+      long peak = detector.add(sample);
+      if (peak >= 0) {
+        peaks.add(peak);
+      }
+    }
+    return peaks;
+  }
+
+  @Test
+  public void findsEveryBeatAfterLearning() {
+    float[] samples = spikes(10 * sampleRate, 100, sampleRate);
+    YcProductPluginRPeakDetector detector = new YcProductPluginRPeakDetector(sampleRate);
+    detector.learn(samples, samples.length);
+
+    ArrayList<Long> peaks = stream(detector, samples);
+
+    assertEquals(10, peaks.size());
+    for (int i = 0; i < peaks.size(); i++) {
+      assertEquals(100 + i * sampleRate, (long) peaks.get(i));
+    }
+  }
+
+  @Test
+  public void streamingLearnsFromFirstTwoSeconds() {
+    float[] samples = spikes(10 * sampleRate, 100, sampleRate);
+    ArrayList<Long> peaks = stream(new YcProductPluginRPeakDetector(sampleRate), samples);
+
+    // beats inside the learning period are not reported
+    assertEquals(8, peaks.size());
+    assertEquals(100 + 2 * sampleRate, (long) peaks.get(0));
+  }
+
+  @Test
+  public void batchMatchesStreaming() {
+    float[] samples = spikes(6 * sampleRate, 40, 200);
+    YcProductPluginRPeakDetector detector = new YcProductPluginRPeakDetector(sampleRate);
+    detector.learn(samples, samples.length);
+    ArrayList<Long> streamed = stream(detector, samples);
+
+    int[] batch = YcProductPluginECGAnalyzer.detectRPeaks(samples, samples.length, sampleRate);
+
+    long[] expected = new long[streamed.size()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = streamed.get(i);
+    }
+    long[] actual = new long[batch.length];
+    for (int i = 0; i < batch.length; i++) {
+      actual[i] = batch[i];
+    }
+    assertTrue(batch.length > 0);
+    assertArrayEquals(expected, actual);
+  }
+}
@@ -0,0 +1,83 @@
+package com.example.yc_product_plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * RSSI smoothing and nearest-first ranking of scan results.
+ */
+public class YcProductPluginScanIndexTest {
+
+  private static final long intervalMs = 100;
+
+  private static YcProductPluginScanIndex.Entry entry(String macAddress, double smoothedRssi) {
+    YcProductPluginScanIndex.Entry entry = new YcProductPluginScanIndex.Entry();
+    entry.macAddress = macAddress;
+    entry.smoothedRssi = smoothedRssi;
+    return entry;
+  }
+
+  @Test
+  public void needsSeveralSamplesBeforeSettled() {
+    YcProductPluginScanIndex.Entry entry = new YcProductPluginScanIndex.Entry();
+    for (int i = 1; i < YcProductPluginScanIndex.minFilterSamples; i++) {
+      entry.filter(-40, intervalMs);
+      assertFalse(entry.isSettled());
+    }
+    entry.filter(-40, intervalMs);
+    assertTrue(entry.isSettled());
+  }
+
+  @Test
+  public void singleStrongReadingIsDamped() {
+    YcProductPluginScanIndex.Entry entry = new YcProductPluginScanIndex.Entry();
+    for (int i = 0; i < 20; i++) {
+      entry.filter(-80, intervalMs);
+    }
+    entry.filter(-40, intervalMs);
+    assertTrue(entry.smoothedRssi < -70);
+  }
+
+  @Test
+  public void convergesToStableLevel() {
+    YcProductPluginScanIndex.Entry entry = new YcProductPluginScanIndex.Entry();
+    entry.filter(-90, intervalMs);
+    for (int i = 0; i < 60; i++) {
+      entry.filter(-60, intervalMs);
+    }
+    assertEquals(-60, entry.smoothedRssi, 1);
+  }
+
+  @Test
+  public void restartsAfterLongGap() {
+    YcProductPluginScanIndex.Entry entry = new YcProductPluginScanIndex.Entry();
+    for (int i = 0; i < 10; i++) {
+      entry.filter(-80, intervalMs);
+    }
+    entry.filter(-50, YcProductPluginScanIndex.filterResetMs + 1);
+    assertEquals(-50, entry.smoothedRssi, 0);
+    assertFalse(entry.isSettled());
+  }
+
+  @Test
+  public void ranksNearestFirstWithStableTies() {
+    ArrayList<YcProductPluginScanIndex.Entry> entries = new ArrayList<>();
+    entries.add(entry("cc:00:00:00:00:03", -70));
+    entries.add(entry("BB:00:00:00:00:02", -50.4));
+    entries.add(entry("AA:00:00:00:00:01", -50.2));
+    entries.add(entry("DD:00:00:00:00:04", -45.6));
+
+    Collections.sort(entries, YcProductPluginScanIndex.nearestFirst);
+
+    assertEquals("DD:00:00:00:00:04", entries.get(0).macAddress);
+    // -50.4 and -50.2 round to the same dB, so the MAC decides
+    assertEquals("AA:00:00:00:00:01", entries.get(1).macAddress);
+    assertEquals("BB:00:00:00:00:02", entries.get(2).macAddress);
+    assertEquals("cc:00:00:00:00:03", entries.get(3).macAddress);
+  }
+}
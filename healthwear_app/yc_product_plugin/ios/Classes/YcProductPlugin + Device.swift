@@ -65,6 +65,9 @@ extension YcProductPlugin {
         var delayTime: TimeInterval = 3.0
         if let time = arguments as? Int {
             delayTime = TimeInterval(time)
+        } else if let options = arguments as? [String: Any],
+                  let time = options["time"] as? Int {
+            delayTime = TimeInterval(time)
         }
         
 
@@ -69,7 +69,8 @@ extension YcProductPlugin {
         guard let list = arguments as? [Any],
         let mcuValue = list.first as? Int,
         let mcu = YCDeviceMCUType(rawValue: UInt8(mcuValue)),
-        let filePath: String = list.last as? String,
+        list.count > 1,
+        let filePath: String = list[1] as? String,
         let device = YCProduct.shared.currentPeripheral
         else {
             
@@ -193,7 +193,8 @@ extension YcProductPlugin {
         result: @escaping FlutterResult
     ) {
         
-        guard let filePath = arguments as? String,
+        // 参数为 filePath 或 [filePath, headerOnly], iOS 总是完整解析
+        guard let filePath = (arguments as? String) ?? ((arguments as? [Any])?.first as? String),
               let data = NSData(contentsOfFile: filePath)
         else {
             
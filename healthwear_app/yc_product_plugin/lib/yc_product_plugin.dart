@@ -94,8 +94,25 @@ extension BleInit on YcProductPlugin {
   }
 
   /// 扫描设备
-  Future<List<BluetoothDevice>?> scanDevice({int time = 6}) {
-    return YcProductPluginPlatform.instance.scanDevice(time: time);
+  /// 扫描过程中设备通过 NativeEventType.deviceScanResult 事件发送 (每 intervalMs 合并一次),
+  /// 设置了 macAddress, namePrefix 或 minRssi 时找到第一个符合条件的设备就结束扫描
+  /// rankByRssi 时结果按平滑后的信号强度从近到远排序, topN 只返回前几个
+  Future<List<BluetoothDevice>?> scanDevice(
+      {int time = 6,
+      int? intervalMs,
+      String? macAddress,
+      String? namePrefix,
+      int? minRssi,
+      bool? rankByRssi,
+      int? topN}) {
+    return YcProductPluginPlatform.instance.scanDevice(
+        time: time,
+        intervalMs: intervalMs,
+        macAddress: macAddress,
+        namePrefix: namePrefix,
+        minRssi: minRssi,
+        rankByRssi: rankByRssi,
+        topN: topN);
   }
 
   /// 停止扫描设备
@@ -122,6 +139,15 @@ extension BleInit on YcProductPlugin {
     return result;
   }
 
+  /// 查询连接记录和各阶段耗时的百分位 (仅Android)
+  /// limit: 返回最近的记录条数, 默认全部; clear 为 true 时清空记录
+  /// {model, sdkInt, count, readyCount, failedCount, percentiles, attempts}
+  Future<PluginResponse?> queryConnectionMetrics(
+      {int? limit, bool clear = false}) {
+    return YcProductPluginPlatform.instance
+        .queryConnectionMetrics(limit: limit, clear: clear);
+  }
+
   /// 获取蓝牙状态，返回值 使用  BluetoothState 来判断
   Future<int?> getBluetoothState() {
     return YcProductPluginPlatform.instance.getBluetoothState();
@@ -134,6 +160,29 @@ extension BleInit on YcProductPlugin {
     connectedDevice?.deviceFeature = currentDeviceFeature;
     return currentDeviceFeature;
   }
+
+  /// 添加设备会话 (仅Android), 返回会话状态和统计
+  Future<PluginResponse<Map?>?> addDeviceSession(String macAddress) {
+    return YcProductPluginPlatform.instance.addDeviceSession(macAddress);
+  }
+
+  /// 删除设备会话, 排队的命令返回失败 (仅Android)
+  Future<PluginResponse?> removeDeviceSession(String macAddress) {
+    return YcProductPluginPlatform.instance.removeDeviceSession(macAddress);
+  }
+
+  /// 查询所有设备会话的状态和统计 (仅Android)
+  Future<PluginResponse<List?>?> queryDeviceSessions() {
+    return YcProductPluginPlatform.instance.queryDeviceSessions();
+  }
+
+  /// 把插件方法加入设备的命令队列, 轮到这台设备并连接后执行 (仅Android)
+  /// method 和 arguments 与直接调用 methodChannel 相同
+  Future<PluginResponse?> enqueueDeviceCommand(String macAddress, String method,
+      {dynamic arguments}) {
+    return YcProductPluginPlatform.instance
+        .enqueueDeviceCommand(macAddress, method, arguments: arguments);
+  }
 }
 
 // MARK: - 健康数据
@@ -569,6 +618,66 @@ extension AppControl on YcProductPlugin {
     return YcProductPluginPlatform.instance.getECGResult();
   }
 
+  /// 开关ECG-PPG同步和实时PTT计算, 下次开始ECG测量时生效 (仅Android)
+  /// 结果通过 NativeEventType.deviceRealPulseTransitTime 上报
+  Future<PluginResponse?> setPulseTransitTimeEnabled(bool isEnable) {
+    return YcProductPluginPlatform.instance
+        .setPulseTransitTimeEnabled(isEnable);
+  }
+
+  /// 导出ECG会话为EDF (可选WFDB .hea + .dat), 成功时返回EDF路径 (仅Android)
+  /// 进度通过 processCallback 返回, 状态码为 DeviceUpdateState.exportingECG
+  Future<PluginResponse<String>?> exportECGSession(String sessionId,
+      String edfPath, ProcessCallback processCallback,
+      {String? wfdbRecordPath, String unit = "mV"}) {
+    return YcProductPluginPlatform.instance.exportECGSession(
+        sessionId, edfPath, processCallback,
+        wfdbRecordPath: wfdbRecordPath, unit: unit);
+  }
+
+  /// 设置ECG/PPG波形显示抽稀 (仅Android)
+  /// mode 0 关闭, 1 min-max, 2 LTTB; pointsPerSecond 每秒显示点数
+  /// 抽稀后的多通道PPG通过 deviceMultiChannelPPGDisplayData 单独上报
+  Future<PluginResponse?> setWaveDisplayDecimation(
+      int mode, int pointsPerSecond,
+      {int? ecgSampleRate, int? ppgSampleRate}) {
+    return YcProductPluginPlatform.instance.setWaveDisplayDecimation(
+        mode, pointsPerSecond,
+        ecgSampleRate: ecgSampleRate, ppgSampleRate: ppgSampleRate);
+  }
+
+  /// 获取本次ECG测量的链路统计 (仅Android)
+  /// 数据包到达间隔, 原生处理耗时, 主线程排队延迟, 发送和丢弃的事件数
+  Future<PluginResponse?> getECGMetrics() {
+    return YcProductPluginPlatform.instance.getECGMetrics();
+  }
+
+  /// 设置ECG链路统计的定时上报间隔 (ms), 0 关闭 (仅Android)
+  /// 测量中通过 NativeEventType.ecgPipelineMetrics 上报
+  Future<PluginResponse?> setECGMetricsInterval(int intervalMs) {
+    return YcProductPluginPlatform.instance.setECGMetricsInterval(intervalMs);
+  }
+
+  /// 查询已保存的ECG会话 (仅Android)
+  /// [{sessionId, startTime, sampleRate, sampleCount, fileSize}]
+  Future<PluginResponse?> queryECGSessions() {
+    return YcProductPluginPlatform.instance.queryECGSessions();
+  }
+
+  /// 删除ECG会话 (仅Android)
+  Future<PluginResponse?> deleteECGSession(String sessionId) {
+    return YcProductPluginPlatform.instance.deleteECGSession(sessionId);
+  }
+
+  /// 批量离线分析ECG会话 (仅Android)
+  /// 返回 会话ID -> 分析结果, 不存在的会话为 {error}, 全部不存在时 code 为 failed
+  /// 进度通过 NativeEventType.ecgAnalysisProgress 上报
+  Future<PluginResponse?> analyzeECGSessions(List<String> sessionIds,
+      {int windowSeconds = 30}) {
+    return YcProductPluginPlatform.instance
+        .analyzeECGSessions(sessionIds, windowSeconds: windowSeconds);
+  }
+
   /// 控制实时数据上传
   Future<PluginResponse?> realTimeDataUpload(bool isEnable,
       {DeviceRealTimeDataType dataType = DeviceRealTimeDataType.step}) {
@@ -715,10 +824,52 @@ extension JlVideo on YcProductPlugin {
 }
 /// otA
 extension DeviceOta on YcProductPlugin {
+  /// 固件升级
+  /// deviceType 和 firmwareVersion 都不为空时, 升级成功后缓存这个固件 (仅Android)
   Future<void> deviceUpgrade(DeviceMcuPlatform mcuPlatform,
-      String firmwareAbsolutePath, OTAProcessCallback processCallBack) {
+      String firmwareAbsolutePath, OTAProcessCallback processCallBack,
+      {String? deviceType, String? firmwareVersion}) {
+    return YcProductPluginPlatform.instance.deviceUpgrade(
+        mcuPlatform, firmwareAbsolutePath, processCallBack,
+        deviceType: deviceType, firmwareVersion: firmwareVersion);
+  }
+
+  /// 查询缓存的固件 {version, filePath, sha256, size, installTime} (仅Android)
+  Future<PluginResponse<Map?>?> queryFirmwareStore(String deviceType) {
+    return YcProductPluginPlatform.instance.queryFirmwareStore(deviceType);
+  }
+
+  /// 用缓存的旧版本和差分补丁生成新固件, 返回 {version, filePath, sha256, size} (仅Android)
+  /// 补丁为 gzip 压缩的 bsdiff 格式 (文件头 BSDIFFGZ), 不支持 bzip2 的 BSDIFF40
+  Future<PluginResponse<Map?>?> applyFirmwarePatch(String deviceType,
+      String baseVersion, String patchPath, String newVersion,
+      {String? sha256}) {
+    return YcProductPluginPlatform.instance.applyFirmwarePatch(
+        deviceType, baseVersion, patchPath, newVersion,
+        sha256: sha256);
+  }
+
+  /// 升级前校验固件文件, 返回 {size, crc32, sha256, isZip, entries, files} (仅Android)
+  /// 文件为空, 截断或压缩包结构损坏时 code 为 failed, data 为原因
+  Future<PluginResponse?> verifyFirmware(
+      DeviceMcuPlatform mcuPlatform, String filePath) {
+    return YcProductPluginPlatform.instance
+        .verifyFirmware(mcuPlatform, filePath);
+  }
+
+  /// 查询最近一次固件升级的记录 (仅Android), 没有记录时 code 为 failed
+  /// {mcu, totalBytes, outcome, error, durationMs, reconnectCount, progress,
+  /// averageBytesPerSecond, minBytesPerSecond, maxBytesPerSecond, phases, windows, events}
+  Future<PluginResponse?> queryUpgradeTelemetry() {
+    return YcProductPluginPlatform.instance.queryUpgradeTelemetry();
+  }
+
+  /// 设置表盘和固件传输进度的上报频率 (仅Android)
+  /// minIntervalMs: 最小发送间隔 (ms), minDelta: 最小进度变化 (0 - 1)
+  Future<PluginResponse?> setProgressReportConfig(
+      int minIntervalMs, double minDelta) {
     return YcProductPluginPlatform.instance
-        .deviceUpgrade(mcuPlatform, firmwareAbsolutePath, processCallBack);
+        .setProgressReportConfig(minIntervalMs, minDelta);
   }
 }
 
@@ -751,14 +902,45 @@ extension WatchFace on YcProductPlugin {
         isEnable, dialID, blockCount, dialVersion, filePath, processCallback);
   }
 
+  /// 批量安装表盘 (仅Android)
+  /// 在同一个连接上依次安装, 单个表盘失败时继续安装其余表盘, 有失败时 code 为 failed
+  /// 进度为整个队列的进度, 返回的 data 为队列状态
+  Future<PluginResponse?> installWatchFaces(
+      List<WatchFaceQueueItem> items, ProcessCallback processCallback) {
+    return YcProductPluginPlatform.instance
+        .installWatchFaces(items, processCallback);
+  }
+
+  /// 重新安装队列中失败和未完成的表盘 (仅Android)
+  /// SDK不支持从指定偏移继续传输, 中断的表盘从头传输
+  Future<PluginResponse?> resumeWatchFaceQueue(
+      ProcessCallback processCallback) {
+    return YcProductPluginPlatform.instance
+        .resumeWatchFaceQueue(processCallback);
+  }
+
+  /// 查询表盘队列状态 (仅Android)
+  /// {isRunning, count, installed, pending, failed, dials}
+  Future<PluginResponse?> queryWatchFaceQueue() {
+    return YcProductPluginPlatform.instance.queryWatchFaceQueue();
+  }
+
+  /// 取消表盘队列, 正在传输的表盘完成后停止 (仅Android)
+  Future<PluginResponse?> cancelWatchFaceQueue() {
+    return YcProductPluginPlatform.instance.cancelWatchFaceQueue();
+  }
+
   /// 获取自定义表盘的参数
+  /// headerOnly: BMP/PNG 的尺寸取自文件头 (仅Android), 圆角和缩略图仍由SDK解析
   Future<PluginResponse<DeviceCustomWatchFaceDataInfo>?>
-      queryDeviceCustomWatchFaceInfo(String filePath) {
+      queryDeviceCustomWatchFaceInfo(String filePath,
+          {bool headerOnly = false}) {
     return YcProductPluginPlatform.instance
-        .queryDeviceCustomWatchFaceInfo(filePath);
+        .queryDeviceCustomWatchFaceInfo(filePath, headerOnly: headerOnly);
   }
 
   /// 下载自定义表盘
+  /// ditherMode: 背景量化到RGB565的方式 (仅Android), 抖动时时间颜色四舍五入到最接近的565颜色
   Future<PluginResponse>? installCustomWatchFace(
       int dialID,
       String filePath,
@@ -769,7 +951,9 @@ extension WatchFace on YcProductPlugin {
       int redColor,
       int greenColor,
       int blueColor,
-      ProcessCallback processCallback) {
+      ProcessCallback processCallback,
+      {DeviceWatchFaceDitherMode ditherMode =
+          DeviceWatchFaceDitherMode.truncate}) {
     return YcProductPluginPlatform.instance.installCustomWatchFace(
         dialID,
         filePath,
@@ -780,7 +964,8 @@ extension WatchFace on YcProductPlugin {
         redColor,
         greenColor,
         blueColor,
-        processCallback);
+        processCallback,
+        ditherMode: ditherMode);
   }
 
   /// 切换杰理表盘
@@ -22,6 +22,8 @@ class DeviceUpdateState {
   static const int failed = 5;
 
   static const int installingWatchFace = 6; // 安装表盘
+
+  static const int exportingECG = 7; // 导出ECG
 }
 
 /// 插件结果
@@ -51,6 +53,16 @@ class NativeEventType {
   /// 蓝牙状态变化
   static const String bluetoothStateChange = "bluetoothStateChange";
 
+  /// 扫描到的设备 (扫描过程中按设备合并发送)
+  static const String deviceScanResult = "deviceScanResult";
+
+  /// 多设备会话状态变化 (带 macAddress)
+  static const String deviceSessionEvent = "deviceSessionEvent";
+
+  /// 连接状态机状态变化 (from, to, attempt, delayMs)
+  static const String deviceConnectionStateChange =
+      "deviceConnectionStateChange";
+
   /// 设备拍照状态变化
   static const String deviceControlPhotoStateChange =
       "deviceControlPhotoStateChange";
@@ -119,12 +131,26 @@ class NativeEventType {
   /// 多通道PPG数据
   static const String deviceMultiChannelPPGData = "deviceMultiChannelPPGData";
 
+  /// 抽稀后的PPG绘图数据 (开启显示抽稀时, 原始的 deviceMultiChannelPPGData 不变)
+  /// ECG测量中为PPG列表; 多通道PPG为 {red, green, ir, dataType, sampleType}, 每包发送
+  static const String deviceMultiChannelPPGDisplayData =
+      "deviceMultiChannelPPGDisplayData";
+
   /// 实时RR数据
   static const String deviceRealECGAlgorithmRR = "deviceRealECGAlgorithmRR";
 
   /// 实时HRV数据
   static const String deviceRealECGAlgorithmHRV = "deviceRealECGAlgorithmHRV";
 
+  /// 实时脉搏传导时间 (PTT), 每个心拍一条 {ptt (ms), rTime (ms), rr (ms), heartRate}
+  static const String deviceRealPulseTransitTime = "deviceRealPulseTransitTime";
+
+  /// ECG链路统计 (setECGMetricsInterval 设置的间隔定时上报)
+  static const String ecgPipelineMetrics = "ecgPipelineMetrics";
+
+  /// ECG离线分析进度 {sessionId, finished, total}
+  static const String ecgAnalysisProgress = "ecgAnalysisProgress";
+
   static final String deviceEndECG = "deviceEndECG";
 
   static final String appECGPPGStatus = "appECGPPGStatus";
@@ -161,6 +187,9 @@ class BluetoothDevice {
   /// 信号值
   int rssiValue = 0;
 
+  /// 平滑后的信号值 (没有时与 rssiValue 相同)
+  int smoothedRssi = 0;
+
   /// 设备固件版本号
   int firmwareVersion = 0;
 
@@ -179,6 +208,7 @@ class BluetoothDevice {
     deviceIdentifier = json["deviceIdentifier"];
     name = json["name"];
     rssiValue = json["rssiValue"];
+    smoothedRssi = json["smoothedRssi"] ?? rssiValue;
     if (json.containsKey("firmwareVersion")) {
       firmwareVersion = json["firmwareVersion"];
     }
@@ -2115,6 +2145,43 @@ class DeviceCustomWatchFaceDataInfo {
   }
 }
 
+/// 自定义表盘背景量化到RGB565的方式
+enum DeviceWatchFaceDitherMode {
+  /// 直接截断 (默认, 与之前相同)
+  truncate,
+
+  /// 4x4 有序抖动
+  ordered,
+
+  /// Floyd–Steinberg 误差扩散
+  floydSteinberg,
+}
+
+/// 批量安装的表盘, 参数与 installWatchFace 一致
+class WatchFaceQueueItem {
+  /// 是否启用
+  bool isEnable;
+
+  /// 表盘id
+  int dialID;
+
+  /// 表盘包数
+  int blockCount;
+
+  /// 版本
+  int dialVersion;
+
+  /// 表盘文件路径
+  String filePath;
+
+  WatchFaceQueueItem(this.isEnable, this.dialID, this.blockCount,
+      this.dialVersion, this.filePath);
+
+  List toList() {
+    return [isEnable, dialID, blockCount, dialVersion, filePath];
+  }
+}
+
 /// 屏幕类型
 enum DeviceScreenType {
   round, //  圆形
@@ -183,8 +183,34 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
   }
 
   @override
-  Future<List<BluetoothDevice>?> scanDevice({int time = 6}) async {
-    final devices = await methodChannel.invokeListMethod("scanDevice", time);
+  Future<List<BluetoothDevice>?> scanDevice(
+      {int time = 6,
+      int? intervalMs,
+      String? macAddress,
+      String? namePrefix,
+      int? minRssi,
+      bool? rankByRssi,
+      int? topN}) async {
+    // 没有额外参数时仍然只传扫描秒数
+    final bool hasOptions = intervalMs != null ||
+        macAddress != null ||
+        namePrefix != null ||
+        minRssi != null ||
+        rankByRssi != null ||
+        topN != null;
+    final devices = await methodChannel.invokeListMethod(
+        "scanDevice",
+        hasOptions
+            ? {
+                "time": time,
+                "intervalMs": intervalMs,
+                "macAddress": macAddress,
+                "namePrefix": namePrefix,
+                "minRssi": minRssi,
+                "rankByRssi": rankByRssi,
+                "topN": topN,
+              }
+            : time);
 
     if (devices?.isEmpty ?? false) {
       return [];
@@ -226,6 +252,17 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
         "disconnectDevice", deviceIdentifier);
   }
 
+  /// 查询连接记录
+  @override
+  Future<PluginResponse?> queryConnectionMetrics(
+      {int? limit, bool clear = false}) async {
+    final result = await methodChannel.invokeMapMethod(
+        "queryConnectionMetrics", clear ? -1 : limit);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
   @override
   Future<int?> getBluetoothState() async {
     return await methodChannel.invokeMethod<int>("getBluetoothState");
@@ -252,6 +289,46 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
     return null;
   }
 
+  /// 添加设备会话
+  @override
+  Future<PluginResponse<Map?>?> addDeviceSession(String macAddress) async {
+    final result =
+        await methodChannel.invokeMapMethod("addDeviceSession", macAddress);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 删除设备会话
+  @override
+  Future<PluginResponse?> removeDeviceSession(String macAddress) async {
+    final result =
+        await methodChannel.invokeMapMethod("removeDeviceSession", macAddress);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
+  /// 查询设备会话
+  @override
+  Future<PluginResponse<List?>?> queryDeviceSessions() async {
+    final result = await methodChannel.invokeMapMethod("queryDeviceSessions");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is List ? data : null);
+  }
+
+  /// 设备命令排队, 返回命令本身的结果
+  @override
+  Future<PluginResponse?> enqueueDeviceCommand(String macAddress, String method,
+      {dynamic arguments}) async {
+    final result = await methodChannel
+        .invokeMethod("enqueueDeviceCommand", [macAddress, method, arguments]);
+    if (result is Map && result.containsKey("code")) {
+      return PluginResponse(result["code"] ?? PluginState.failed, result["data"]);
+    }
+    return PluginResponse(PluginState.succeed, result);
+  }
+
   @override
   Future<PluginResponse<List>?> queryDeviceHealthData(
       int healthDataType) async {
@@ -1200,6 +1277,87 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
     return PluginResponse(statusCode, result);
   }
 
+  /// 开关实时PTT计算
+  @override
+  Future<PluginResponse?> setPulseTransitTimeEnabled(bool isEnable) async {
+    final result = await methodChannel.invokeMapMethod(
+        "setPulseTransitTimeEnabled", isEnable);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
+  /// 导出ECG会话
+  @override
+  Future<PluginResponse<String>?> exportECGSession(
+      String sessionId, String edfPath, ProcessCallback processCallback,
+      {String? wfdbRecordPath, String unit = "mV"}) async {
+    _otaCallback = processCallback;
+
+    final result = await methodChannel.invokeMapMethod("exportECGSession",
+        [sessionId, edfPath, wfdbRecordPath, unit]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "${result?["data"] ?? ""}");
+  }
+
+  /// 设置波形显示抽稀
+  @override
+  Future<PluginResponse?> setWaveDisplayDecimation(
+      int mode, int pointsPerSecond,
+      {int? ecgSampleRate, int? ppgSampleRate}) async {
+    final result = await methodChannel.invokeMapMethod(
+        "setWaveDisplayDecimation",
+        [mode, pointsPerSecond, ecgSampleRate ?? 0, ppgSampleRate ?? 0]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
+  /// 获取ECG链路统计
+  @override
+  Future<PluginResponse?> getECGMetrics() async {
+    final result = await methodChannel.invokeMapMethod("getECGMetrics");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 设置ECG链路统计上报间隔
+  @override
+  Future<PluginResponse?> setECGMetricsInterval(int intervalMs) async {
+    final result =
+        await methodChannel.invokeMapMethod("setECGMetricsInterval", intervalMs);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
+  /// 查询ECG会话
+  @override
+  Future<PluginResponse?> queryECGSessions() async {
+    final result = await methodChannel.invokeMapMethod("queryECGSessions");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is List ? data : []);
+  }
+
+  /// 删除ECG会话
+  @override
+  Future<PluginResponse?> deleteECGSession(String sessionId) async {
+    final result =
+        await methodChannel.invokeMapMethod("deleteECGSession", sessionId);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
+  /// 离线分析ECG会话
+  @override
+  Future<PluginResponse?> analyzeECGSessions(List<String> sessionIds,
+      {int windowSeconds = 30}) async {
+    final result = await methodChannel
+        .invokeMapMethod("analyzeECGSessions", [sessionIds, windowSeconds]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
   // MARK: - 历史ECG
 
   /// 查询基本信息
@@ -1353,11 +1511,67 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
   /// 固件升级
   @override
   Future<void> deviceUpgrade(DeviceMcuPlatform mcuPlatform,
-      String firmwareAbsolutePath, OTAProcessCallback processCallBack) async {
+      String firmwareAbsolutePath, OTAProcessCallback processCallBack,
+      {String? deviceType, String? firmwareVersion}) async {
     _otaCallback = processCallBack;
 
-    await methodChannel.invokeMethod(
-        'deviceUpgrade', [mcuPlatform.index, firmwareAbsolutePath]);
+    final arguments = [mcuPlatform.index, firmwareAbsolutePath];
+    if (deviceType != null && firmwareVersion != null) {
+      arguments.addAll([deviceType, firmwareVersion]);
+    }
+    await methodChannel.invokeMethod('deviceUpgrade', arguments);
+  }
+
+  /// 查询缓存的固件
+  @override
+  Future<PluginResponse<Map?>?> queryFirmwareStore(String deviceType) async {
+    final result =
+        await methodChannel.invokeMapMethod("queryFirmwareStore", [deviceType]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 差分补丁生成新固件
+  @override
+  Future<PluginResponse<Map?>?> applyFirmwarePatch(String deviceType,
+      String baseVersion, String patchPath, String newVersion,
+      {String? sha256}) async {
+    final result = await methodChannel.invokeMapMethod("applyFirmwarePatch",
+        [deviceType, baseVersion, patchPath, newVersion, sha256]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 校验固件文件
+  @override
+  Future<PluginResponse?> verifyFirmware(
+      DeviceMcuPlatform mcuPlatform, String filePath) async {
+    final result = await methodChannel
+        .invokeMapMethod("verifyFirmware", [mcuPlatform.index, filePath]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, result?["data"] ?? "");
+  }
+
+  /// 查询固件升级记录
+  @override
+  Future<PluginResponse?> queryUpgradeTelemetry() async {
+    final result =
+        await methodChannel.invokeMapMethod("queryUpgradeTelemetry");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 设置传输进度的上报频率
+  @override
+  Future<PluginResponse?> setProgressReportConfig(
+      int minIntervalMs, double minDelta) async {
+    final result = await methodChannel.invokeMapMethod(
+        "setProgressReportConfig", [minIntervalMs, minDelta]);
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
   }
 
   /// 查询表盘信息
@@ -1413,12 +1627,56 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
     return PluginResponse(statusCode, "");
   }
 
+  /// 批量安装表盘
+  @override
+  Future<PluginResponse?> installWatchFaces(
+      List<WatchFaceQueueItem> items, ProcessCallback processCallback) async {
+    _otaCallback = processCallback;
+
+    final result = await methodChannel.invokeMapMethod(
+        "installWatchFaces", items.map((item) => item.toList()).toList());
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 继续表盘队列
+  @override
+  Future<PluginResponse?> resumeWatchFaceQueue(
+      ProcessCallback processCallback) async {
+    _otaCallback = processCallback;
+
+    final result = await methodChannel.invokeMapMethod("resumeWatchFaceQueue");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 查询表盘队列
+  @override
+  Future<PluginResponse?> queryWatchFaceQueue() async {
+    final result = await methodChannel.invokeMapMethod("queryWatchFaceQueue");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    final data = result?["data"];
+    return PluginResponse(statusCode, data is Map ? data : null);
+  }
+
+  /// 取消表盘队列
+  @override
+  Future<PluginResponse?> cancelWatchFaceQueue() async {
+    final result = await methodChannel.invokeMapMethod("cancelWatchFaceQueue");
+    final int statusCode = result?["code"] ?? PluginState.failed;
+    return PluginResponse(statusCode, "");
+  }
+
   /// 查询缩略图的信息
   @override
   Future<PluginResponse<DeviceCustomWatchFaceDataInfo>?>
-      queryDeviceCustomWatchFaceInfo(String filePath) async {
+      queryDeviceCustomWatchFaceInfo(String filePath,
+          {bool headerOnly = false}) async {
     final result = await methodChannel.invokeMapMethod(
-        "queryDeviceCustomWatchFaceInfo", filePath);
+        "queryDeviceCustomWatchFaceInfo",
+        headerOnly ? [filePath, headerOnly] : filePath);
     final int statusCode = result?["code"];
     final map = result?["data"];
     final info = DeviceCustomWatchFaceDataInfo.fromMap(map);
@@ -1438,7 +1696,9 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
       int redColor,
       int greenColor,
       int blueColor,
-      ProcessCallback processCallback) async {
+      ProcessCallback processCallback,
+      {DeviceWatchFaceDitherMode ditherMode =
+          DeviceWatchFaceDitherMode.truncate}) async {
     _otaCallback = processCallback;
     final result =
         await methodChannel.invokeMapMethod("installCustomWatchFace", [
@@ -1450,7 +1710,8 @@ class MethodChannelYcProductPlugin extends YcProductPluginPlatform {
       timeY,
       redColor,
       greenColor,
-      blueColor
+      blueColor,
+      ditherMode.index
     ]);
     final int statusCode = result?["code"];
     return PluginResponse(statusCode, "");
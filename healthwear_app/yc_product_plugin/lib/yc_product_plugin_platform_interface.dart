@@ -46,7 +46,14 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
     throw UnimplementedError('exitScanDevice has not been implemented.');
   }
 
-  Future<List<BluetoothDevice>?> scanDevice({int time = 6}) {
+  Future<List<BluetoothDevice>?> scanDevice(
+      {int time = 6,
+      int? intervalMs,
+      String? macAddress,
+      String? namePrefix,
+      int? minRssi,
+      bool? rankByRssi,
+      int? topN}) {
     throw UnimplementedError('scanDevice has not been implemented.');
   }
 
@@ -78,6 +85,13 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
     throw UnimplementedError('disconnectDevice has not been implemented.');
   }
 
+  /// 查询连接记录
+  Future<PluginResponse?> queryConnectionMetrics(
+      {int? limit, bool clear = false}) {
+    throw UnimplementedError(
+        'queryConnectionMetrics has not been implemented.');
+  }
+
   Future<int?> getBluetoothState() {
     throw UnimplementedError('getBluetoothState has not been implemented.');
   }
@@ -87,6 +101,27 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
     throw UnimplementedError('getDeviceFeature has not been implemented.');
   }
 
+  /// 添加设备会话
+  Future<PluginResponse<Map?>?> addDeviceSession(String macAddress) {
+    throw UnimplementedError('addDeviceSession has not been implemented.');
+  }
+
+  /// 删除设备会话
+  Future<PluginResponse?> removeDeviceSession(String macAddress) {
+    throw UnimplementedError('removeDeviceSession has not been implemented.');
+  }
+
+  /// 查询设备会话
+  Future<PluginResponse<List?>?> queryDeviceSessions() {
+    throw UnimplementedError('queryDeviceSessions has not been implemented.');
+  }
+
+  /// 设备命令排队
+  Future<PluginResponse?> enqueueDeviceCommand(String macAddress, String method,
+      {dynamic arguments}) {
+    throw UnimplementedError('enqueueDeviceCommand has not been implemented.');
+  }
+
   /// 同步健康历史数据
   /// healthDataType - HealthDataType 数据类型
   /// 回值类型  Map {"code": PluginState, "datas": json }
@@ -487,6 +522,54 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
     throw UnimplementedError('getECGResult has not been implemented.');
   }
 
+  /// 开关实时PTT计算
+  Future<PluginResponse?> setPulseTransitTimeEnabled(bool isEnable) {
+    throw UnimplementedError(
+        'setPulseTransitTimeEnabled has not been implemented.');
+  }
+
+  /// 导出ECG会话
+  Future<PluginResponse<String>?> exportECGSession(
+      String sessionId, String edfPath, ProcessCallback processCallback,
+      {String? wfdbRecordPath, String unit = "mV"}) {
+    throw UnimplementedError('exportECGSession has not been implemented.');
+  }
+
+  /// 设置波形显示抽稀
+  Future<PluginResponse?> setWaveDisplayDecimation(
+      int mode, int pointsPerSecond,
+      {int? ecgSampleRate, int? ppgSampleRate}) {
+    throw UnimplementedError(
+        'setWaveDisplayDecimation has not been implemented.');
+  }
+
+  /// 获取ECG链路统计
+  Future<PluginResponse?> getECGMetrics() {
+    throw UnimplementedError('getECGMetrics has not been implemented.');
+  }
+
+  /// 设置ECG链路统计上报间隔
+  Future<PluginResponse?> setECGMetricsInterval(int intervalMs) {
+    throw UnimplementedError(
+        'setECGMetricsInterval has not been implemented.');
+  }
+
+  /// 查询ECG会话
+  Future<PluginResponse?> queryECGSessions() {
+    throw UnimplementedError('queryECGSessions has not been implemented.');
+  }
+
+  /// 删除ECG会话
+  Future<PluginResponse?> deleteECGSession(String sessionId) {
+    throw UnimplementedError('deleteECGSession has not been implemented.');
+  }
+
+  /// 离线分析ECG会话
+  Future<PluginResponse?> analyzeECGSessions(List<String> sessionIds,
+      {int windowSeconds = 30}) {
+    throw UnimplementedError('analyzeECGSessions has not been implemented.');
+  }
+
   /// 查询基本信息
   Future<PluginResponse?> queryCollectDataBasicInfo(
       DeviceCollectDataType type) {
@@ -519,10 +602,42 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
 
   /// OTA升级
   Future<void> deviceUpgrade(DeviceMcuPlatform mcuPlatform,
-      String firmwareAbsolutePath, OTAProcessCallback processCallBack) {
+      String firmwareAbsolutePath, OTAProcessCallback processCallBack,
+      {String? deviceType, String? firmwareVersion}) {
     throw UnimplementedError('deviceUpgrade has not been implemented.');
   }
 
+  /// 查询缓存的固件
+  Future<PluginResponse<Map?>?> queryFirmwareStore(String deviceType) {
+    throw UnimplementedError('queryFirmwareStore has not been implemented.');
+  }
+
+  /// 差分补丁生成新固件
+  Future<PluginResponse<Map?>?> applyFirmwarePatch(String deviceType,
+      String baseVersion, String patchPath, String newVersion,
+      {String? sha256}) {
+    throw UnimplementedError('applyFirmwarePatch has not been implemented.');
+  }
+
+  /// 校验固件文件
+  Future<PluginResponse?> verifyFirmware(
+      DeviceMcuPlatform mcuPlatform, String filePath) {
+    throw UnimplementedError('verifyFirmware has not been implemented.');
+  }
+
+  /// 查询固件升级记录
+  Future<PluginResponse?> queryUpgradeTelemetry() {
+    throw UnimplementedError(
+        'queryUpgradeTelemetry has not been implemented.');
+  }
+
+  /// 设置传输进度的上报频率
+  Future<PluginResponse?> setProgressReportConfig(
+      int minIntervalMs, double minDelta) {
+    throw UnimplementedError(
+        'setProgressReportConfig has not been implemented.');
+  }
+
   /// 查询表盘信息
   Future<PluginResponse<List<DeviceWatchInfo>>?> queryWatchFaceInfo() {
     throw UnimplementedError('queryWatchFaceInfo has not been implemented.');
@@ -549,9 +664,34 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
     throw UnimplementedError('installWatchFace has not been implemented.');
   }
 
+  /// 批量安装表盘
+  Future<PluginResponse?> installWatchFaces(
+      List<WatchFaceQueueItem> items, ProcessCallback processCallback) {
+    throw UnimplementedError('installWatchFaces has not been implemented.');
+  }
+
+  /// 继续表盘队列
+  Future<PluginResponse?> resumeWatchFaceQueue(
+      ProcessCallback processCallback) {
+    throw UnimplementedError(
+        'resumeWatchFaceQueue has not been implemented.');
+  }
+
+  /// 查询表盘队列
+  Future<PluginResponse?> queryWatchFaceQueue() {
+    throw UnimplementedError('queryWatchFaceQueue has not been implemented.');
+  }
+
+  /// 取消表盘队列
+  Future<PluginResponse?> cancelWatchFaceQueue() {
+    throw UnimplementedError(
+        'cancelWatchFaceQueue has not been implemented.');
+  }
+
   /// 获取自定义表盘的参数
   Future<PluginResponse<DeviceCustomWatchFaceDataInfo>?>
-      queryDeviceCustomWatchFaceInfo(String filePath) {
+      queryDeviceCustomWatchFaceInfo(String filePath,
+          {bool headerOnly = false}) {
     throw UnimplementedError(
         'queryDeviceCustomWatchFaceInfo has not been implemented.');
   }
@@ -567,7 +707,9 @@ abstract class YcProductPluginPlatform extends PlatformInterface {
       int redColor,
       int greenColor,
       int blueColor,
-      ProcessCallback processCallback) {
+      ProcessCallback processCallback,
+      {DeviceWatchFaceDitherMode ditherMode =
+          DeviceWatchFaceDitherMode.truncate}) {
     throw UnimplementedError(
         'installCustomWatchFace has not been implemented.');
   }